@@ -22,6 +22,8 @@ import akka.serialization.Serializer
 import com.twitter.chill._
 import com.twitter.chill.config.ConfiguredInstantiator
 
+import scala.collection.JavaConverters._
+
 /**
  * To use, add a key to your config like:
  *
@@ -51,16 +53,28 @@ class AkkaSerializer(system: ExtendedActorSystem) extends Serializer {
     (new ScalaKryoInstantiator).withRegistrar(new ActorRefSerializer(system))
 
   /**
-   * Since each thread only needs 1 Kryo, the pool doesn't need more space than the number of threads. We
-   * guess that there are 4 hyperthreads / core and then multiple by the nember of cores.
+   * Since each thread only needs 1 Kryo, the pool doesn't need more space than the number of threads. Set
+   * com.twitter.chill.poolsize in the actor system config to size it, otherwise KryoPool.defaultPoolSize is
+   * used.
    */
-  def poolSize: Int = {
-    val GUESS_THREADS_PER_CORE = 4
-    GUESS_THREADS_PER_CORE * Runtime.getRuntime.availableProcessors
-  }
+  def poolSize: Int =
+    new AkkaConfig(system.settings.config).getInt(KryoPool.POOL_SIZE, KryoPool.defaultPoolSize)
 
-  val kryoPool: KryoPool =
-    KryoPool.withByteArrayOutputStream(poolSize, kryoInstantiator)
+  /**
+   * Messages to round trip through each instance built when com.twitter.chill.prewarm is set, so their
+   * serializers are ready before the first real message.
+   */
+  def prewarmSamples: Iterable[AnyRef] = Nil
+
+  val kryoPool: KryoPool = {
+    val config = new AkkaConfig(system.settings.config)
+    val pool = KryoPool.withByteArrayOutputStream(poolSize, kryoInstantiator)
+    if (config.getBoolean(KryoPool.POOL_METRICS, false))
+      pool.setInstrumentation(PoolStats.named(AkkaSerializer.PoolStatsName))
+    val prewarm = config.getInt(KryoPool.PREWARM, 0)
+    if (prewarm > 0) pool.prewarm(prewarm, prewarmSamples.asJava)
+    pool
+  }
 
   def includeManifest: Boolean = false
   def identifier = 8675309
@@ -69,6 +83,12 @@ class AkkaSerializer(system: ExtendedActorSystem) extends Serializer {
     kryoPool.fromBytes(bytes)
 }
 
+object AkkaSerializer {
+
+  /** Name of the PoolStats the serializer records into when KryoPool.POOL_METRICS is set */
+  val PoolStatsName: String = "com.twitter.chill.akka"
+}
+
 /**
  * Uses the Config system of chill.config to Configure at runtime which KryoInstantiator to use Overriding
  * kryoInstantiator and using your own class name is probably easier for most cases. See
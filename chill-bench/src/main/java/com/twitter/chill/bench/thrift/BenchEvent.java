@@ -0,0 +1,198 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill.bench.thrift;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A hand-written TBase for TBaseSerializer benchmarks, laid out like the struct
+ * in bench.thrift (that Scrooge compiles for the ScroogeThriftStructSerializer ones):
+ *
+ * struct BenchEvent { 1: i64 id; 2: string name; 3: list<i64> values }
+ */
+public class BenchEvent implements TBase<BenchEvent, BenchEvent._Fields> {
+  private static final TStruct STRUCT = new TStruct("BenchEvent");
+  private static final TField ID = new TField("id", TType.I64, (short)1);
+  private static final TField NAME = new TField("name", TType.STRING, (short)2);
+  private static final TField VALUES = new TField("values", TType.LIST, (short)3);
+
+  public enum _Fields implements TFieldIdEnum {
+    ID((short)1, "id"),
+    NAME((short)2, "name"),
+    VALUES((short)3, "values");
+
+    private final short id;
+    private final String name;
+
+    _Fields(short id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    public short getThriftFieldId() { return id; }
+    public String getFieldName() { return name; }
+  }
+
+  public long id;
+  public String name;
+  public List<Long> values;
+  private boolean idSet;
+
+  public BenchEvent() { }
+
+  public BenchEvent(long id, String name, List<Long> values) {
+    this.id = id;
+    this.name = name;
+    this.values = values;
+    this.idSet = true;
+  }
+
+  public _Fields fieldForId(int fieldId) {
+    switch(fieldId) {
+      case 1: return _Fields.ID;
+      case 2: return _Fields.NAME;
+      case 3: return _Fields.VALUES;
+      default: return null;
+    }
+  }
+
+  public boolean isSet(_Fields field) {
+    switch(field) {
+      case ID: return idSet;
+      case NAME: return name != null;
+      default: return values != null;
+    }
+  }
+
+  public Object getFieldValue(_Fields field) {
+    switch(field) {
+      case ID: return id;
+      case NAME: return name;
+      default: return values;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public void setFieldValue(_Fields field, Object value) {
+    switch(field) {
+      case ID:
+        idSet = value != null;
+        id = idSet ? (Long)value : 0L;
+        break;
+      case NAME:
+        name = (String)value;
+        break;
+      default:
+        values = (List<Long>)value;
+    }
+  }
+
+  public BenchEvent deepCopy() {
+    BenchEvent copy = new BenchEvent(id, name, values == null ? null : new ArrayList<Long>(values));
+    copy.idSet = idSet;
+    return copy;
+  }
+
+  public void clear() {
+    id = 0L;
+    idSet = false;
+    name = null;
+    values = null;
+  }
+
+  public void read(TProtocol iprot) throws TException {
+    clear();
+    iprot.readStructBegin();
+    while(true) {
+      TField field = iprot.readFieldBegin();
+      if(field.type == TType.STOP) { break; }
+      if(field.id == 1 && field.type == TType.I64) {
+        id = iprot.readI64();
+        idSet = true;
+      }
+      else if(field.id == 2 && field.type == TType.STRING) {
+        name = iprot.readString();
+      }
+      else if(field.id == 3 && field.type == TType.LIST) {
+        TList list = iprot.readListBegin();
+        values = new ArrayList<Long>(list.size);
+        for(int i = 0; i < list.size; i++) { values.add(iprot.readI64()); }
+        iprot.readListEnd();
+      }
+      else {
+        TProtocolUtil.skip(iprot, field.type);
+      }
+      iprot.readFieldEnd();
+    }
+    iprot.readStructEnd();
+  }
+
+  public void write(TProtocol oprot) throws TException {
+    oprot.writeStructBegin(STRUCT);
+    if(idSet) {
+      oprot.writeFieldBegin(ID);
+      oprot.writeI64(id);
+      oprot.writeFieldEnd();
+    }
+    if(name != null) {
+      oprot.writeFieldBegin(NAME);
+      oprot.writeString(name);
+      oprot.writeFieldEnd();
+    }
+    if(values != null) {
+      oprot.writeFieldBegin(VALUES);
+      oprot.writeListBegin(new TList(TType.I64, values.size()));
+      for(long v : values) { oprot.writeI64(v); }
+      oprot.writeListEnd();
+      oprot.writeFieldEnd();
+    }
+    oprot.writeFieldStop();
+    oprot.writeStructEnd();
+  }
+
+  public int compareTo(BenchEvent that) {
+    int c = Long.compare(id, that.id);
+    if(c == 0) { c = String.valueOf(name).compareTo(String.valueOf(that.name)); }
+    return c;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(!(o instanceof BenchEvent)) { return false; }
+    BenchEvent that = (BenchEvent)o;
+    return idSet == that.idSet && id == that.id
+      && (name == null ? that.name == null : name.equals(that.name))
+      && (values == null ? that.values == null : values.equals(that.values));
+  }
+
+  @Override
+  public int hashCode() {
+    int h = Long.hashCode(id);
+    h = 31 * h + (name == null ? 0 : name.hashCode());
+    return 31 * h + (values == null ? 0 : values.hashCode());
+  }
+}
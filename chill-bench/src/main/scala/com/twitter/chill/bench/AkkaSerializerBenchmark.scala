@@ -0,0 +1,65 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import akka.actor.{ActorSystem, ExtendedActorSystem}
+import com.twitter.chill.akka.AkkaSerializer
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration
+
+/**
+ * AkkaSerializer as akka uses it, for a small message and a large one:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*AkkaSerializerBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class AkkaSerializerBenchmark {
+  @Param(Array("tuple", "map"))
+  var payload: String = _
+
+  var system: ActorSystem = _
+  var serializer: AkkaSerializer = _
+  var message: AnyRef = _
+  var bytes: Array[Byte] = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("chill-bench")
+    serializer = new AkkaSerializer(system.asInstanceOf[ExtendedActorSystem])
+    message = payload match {
+      case "tuple" => (42L, "event", Some(3.14))
+      case "map"   => (0 until 1000).map(i => i.toString -> List(i, i + 1)).toMap
+    }
+    bytes = serializer.toBinary(message)
+  }
+
+  @TearDown
+  def tearDown(): Unit =
+    Await.result(system.terminate(), Duration.Inf)
+
+  @Benchmark
+  def toBinary: Array[Byte] = serializer.toBinary(message)
+
+  @Benchmark
+  def fromBinary: AnyRef = serializer.fromBinary(bytes, None)
+}
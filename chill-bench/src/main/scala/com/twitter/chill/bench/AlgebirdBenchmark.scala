@@ -0,0 +1,52 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.algebird.{AdaptiveVector, AveragedValue, HyperLogLogMonoid, Moments, QTree, QTreeSemigroup}
+import com.twitter.chill.{KryoPool, ScalaKryoInstantiator}
+import com.twitter.chill.algebird.AlgebirdRegistrar
+import org.openjdk.jmh.annotations._
+
+/**
+ * The serializers AlgebirdRegistrar adds:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*AlgebirdBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class AlgebirdBenchmark extends RoundTripBenchmark {
+  @Param(Array("averagedValue", "moments", "qtree", "hll", "denseVector", "sparseVector"))
+  var payload: String = _
+
+  def init(): (KryoPool, AnyRef) = {
+    val v: AnyRef = payload match {
+      case "averagedValue" => AveragedValue(1000L, 499.5)
+      case "moments"       => Moments(1000L, 499.5, 83333.25, 0.0, 1.25e10)
+      case "qtree" =>
+        val sg = new QTreeSemigroup[Double](6)
+        (0 until 1000).map(i => QTree(i.toDouble)).reduce(sg.plus)
+      case "hll" =>
+        new HyperLogLogMonoid(12).batchCreate((0 until 1000).map(_.toString.getBytes("UTF-8")))
+      case "denseVector"  => AdaptiveVector.fromVector(Vector.tabulate(1000)(identity), 0)
+      case "sparseVector" => AdaptiveVector.fromVector(Vector.tabulate(1000)(i => if (i % 100 == 0) i else 0), 0)
+    }
+    (KryoPool.withByteArrayOutputStream(1, (new ScalaKryoInstantiator).withRegistrar(new AlgebirdRegistrar)), v)
+  }
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.esotericsoftware.kryo.Kryo
+import com.twitter.chill.{IKryoRegistrar, KryoPool, ScalaKryoInstantiator}
+import com.twitter.chill.avro.AvroSerializer
+import org.apache.avro.{Schema, SchemaBuilder}
+import org.apache.avro.generic.GenericData.Record
+import org.apache.avro.generic.GenericRecordBuilder
+import org.openjdk.jmh.annotations._
+
+import scala.collection.JavaConverters._
+
+/**
+ * AvroSerializer.GenericRecordSerializer, with the schema given up front or taken from each record:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*AvroBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class AvroBenchmark extends RoundTripBenchmark {
+  @Param(Array("given", "fromRecord"))
+  var schemaSource: String = _
+
+  @Param(Array("10", "1000"))
+  var values: Int = _
+
+  def init(): (KryoPool, AnyRef) = {
+    val schema: Schema = SchemaBuilder
+      .record("BenchEvent")
+      .fields
+      .name("id")
+      .`type`()
+      .longType()
+      .noDefault()
+      .name("name")
+      .`type`()
+      .stringType()
+      .noDefault()
+      .name("values")
+      .`type`()
+      .array()
+      .items()
+      .longType()
+      .noDefault()
+      .endRecord
+    val record = new GenericRecordBuilder(schema)
+      .set("id", 42L)
+      .set("name", "event")
+      .set("values", (0 until values).map(i => Long.box(i.toLong)).asJava)
+      .build
+    val ser = schemaSource match {
+      case "given"      => AvroSerializer.GenericRecordSerializer[Record](schema)
+      case "fromRecord" => AvroSerializer.GenericRecordSerializer[Record]()
+    }
+    val reg = new IKryoRegistrar {
+      def apply(k: Kryo): Unit = k.register(classOf[Record], ser)
+    }
+    (KryoPool.withByteArrayOutputStream(1, (new ScalaKryoInstantiator).withRegistrar(reg)), record)
+  }
+}
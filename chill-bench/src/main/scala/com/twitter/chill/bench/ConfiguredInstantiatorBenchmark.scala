@@ -0,0 +1,105 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.{ClassRegistrar, IKryoRegistrar, KryoInstantiator, ScalaKryoInstantiator}
+import com.twitter.chill.config.{ConfiguredInstantiator, JavaMapConfig}
+import com.twitter.chill.java.IterableRegistrar
+import org.openjdk.jmh.annotations._
+
+/**
+ * Time to build a ConfiguredInstantiator from a serialized instantiator, as every Hadoop or Storm task does
+ * at startup, in the plain and deflated encodings. The cache is off so every construction decodes. The
+ * length of each config value is printed during setup:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 .*ConfiguredInstantiatorBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class ConfiguredInstantiatorBenchmark {
+  @Param(Array("plain", "deflated"))
+  var encoding: String = _
+
+  var conf: JavaMapConfig = _
+
+  @Setup
+  def setup(): Unit = {
+    ConfiguredInstantiator.setCacheSize(0)
+    val registrars = new _root_.java.util.ArrayList[IKryoRegistrar]
+    ConfiguredInstantiatorBenchmark.jobClasses.foreach(c => registrars.add(new ClassRegistrar(c)))
+    val ki = (new ScalaKryoInstantiator).withRegistrar(new IterableRegistrar(registrars))
+    conf = new JavaMapConfig
+    ConfiguredInstantiator.setSerialized(conf, classOf[ScalaKryoInstantiator], ki, encoding == "deflated")
+    println(s"\n$encoding config value: ${conf.get(ConfiguredInstantiator.KEY).length} chars")
+  }
+
+  @TearDown
+  def tearDown(): Unit =
+    ConfiguredInstantiator.setCacheSize(ConfiguredInstantiator.DEFAULT_CACHE_SIZE)
+
+  @Benchmark
+  def construct: KryoInstantiator = new ConfiguredInstantiator(conf)
+}
+
+object ConfiguredInstantiatorBenchmark {
+  // Stands in for the record, key and collection classes a job registers on top of AllScalaRegistrar
+  val jobClasses: Seq[Class[_]] = Seq(
+    classOf[_root_.java.util.ArrayList[_]],
+    classOf[_root_.java.util.LinkedList[_]],
+    classOf[_root_.java.util.HashMap[_, _]],
+    classOf[_root_.java.util.LinkedHashMap[_, _]],
+    classOf[_root_.java.util.TreeMap[_, _]],
+    classOf[_root_.java.util.HashSet[_]],
+    classOf[_root_.java.util.TreeSet[_]],
+    classOf[_root_.java.util.ArrayDeque[_]],
+    classOf[_root_.java.util.concurrent.ConcurrentHashMap[_, _]],
+    classOf[_root_.java.util.Date],
+    classOf[_root_.java.util.UUID],
+    classOf[_root_.java.math.BigDecimal],
+    classOf[_root_.java.math.BigInteger],
+    classOf[_root_.java.sql.Timestamp],
+    classOf[_root_.java.net.URI],
+    classOf[Array[Int]],
+    classOf[Array[Long]],
+    classOf[Array[Double]],
+    classOf[Array[String]],
+    classOf[Array[Array[Byte]]],
+    classOf[Option[_]],
+    classOf[Some[_]],
+    classOf[Either[_, _]],
+    classOf[Left[_, _]],
+    classOf[Right[_, _]],
+    classOf[scala.collection.immutable.Range],
+    classOf[scala.collection.immutable.Vector[_]],
+    classOf[scala.collection.immutable.List[_]],
+    classOf[scala.collection.immutable.Queue[_]],
+    classOf[scala.collection.immutable.TreeMap[_, _]],
+    classOf[scala.collection.immutable.TreeSet[_]],
+    classOf[scala.collection.immutable.BitSet],
+    classOf[scala.collection.mutable.ArrayBuffer[_]],
+    classOf[scala.collection.mutable.HashMap[_, _]],
+    classOf[scala.collection.mutable.HashSet[_]],
+    classOf[scala.collection.mutable.ListBuffer[_]],
+    classOf[scala.math.BigDecimal],
+    classOf[scala.math.BigInt],
+    classOf[Tuple4[_, _, _, _]],
+    classOf[Tuple5[_, _, _, _, _]]
+  )
+}
@@ -0,0 +1,56 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.{KryoPool, ScalaKryoInstantiator}
+import org.openjdk.jmh.annotations._
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * KryoPool.deepCopy (Kryo.copy) against the serialize/deserialize round trip it replaced:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 .*DeepCopyBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class DeepCopyBenchmark {
+  @Param(Array("immutableMap", "tupleList", "mutableBuffers"))
+  var payload: String = _
+
+  var pool: KryoPool = _
+  var value: AnyRef = _
+
+  @Setup
+  def setup(): Unit = {
+    pool = KryoPool.withByteArrayOutputStream(1, new ScalaKryoInstantiator)
+    value = payload match {
+      case "immutableMap"   => (0 until 1000).map(i => i.toString -> i.toLong).toMap
+      case "tupleList"      => List.tabulate(1000)(i => (i, "item" + i, Some(i.toDouble)))
+      case "mutableBuffers" => Vector.tabulate(100)(i => ArrayBuffer.tabulate(10)(j => i * j))
+    }
+  }
+
+  @Benchmark
+  def kryoCopy: AnyRef = pool.deepCopy(value)
+
+  @Benchmark
+  def roundTrip: AnyRef = pool.roundTripCopy(value)
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.ScalaKryoInstantiator
+import com.twitter.chill.config.ConfiguredInstantiator
+import com.twitter.chill.hadoop.{HadoopConfig, KryoSerialization}
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.io.serializer.{Deserializer, Serializer}
+import org.openjdk.jmh.annotations._
+
+/**
+ * The Hadoop KryoSerializer and KryoDeserializer, one record per call on an already open stream the way a
+ * map output spill uses them:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*HadoopSerializationBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class HadoopSerializationBenchmark {
+  @Param(Array("tuple", "list"))
+  var payload: String = _
+
+  var value: AnyRef = _
+  var out: ByteArrayOutputStream = _
+  var serializer: Serializer[AnyRef] = _
+  var in: ByteArrayInputStream = _
+  var deserializer: Deserializer[AnyRef] = _
+
+  @Setup
+  def setup(): Unit = {
+    val conf = new Configuration
+    ConfiguredInstantiator.setReflect(new HadoopConfig(conf), classOf[ScalaKryoInstantiator])
+    val serialization = new KryoSerialization(conf)
+    value = payload match {
+      case "tuple" => (42L, "event", 3.14)
+      case "list"  => List.tabulate(1000)(_.toLong)
+    }
+    // Hadoop asks for a serializer per key or value class, records carry no class
+    val cls = value.getClass.asInstanceOf[Class[AnyRef]]
+
+    out = new ByteArrayOutputStream
+    serializer = serialization.getSerializer(cls)
+    serializer.open(out)
+
+    val record = new ByteArrayOutputStream
+    val once = serialization.getSerializer(cls)
+    once.open(record)
+    once.serialize(value)
+    once.close()
+    in = new ByteArrayInputStream(record.toByteArray)
+    deserializer = serialization.getDeserializer(cls)
+    deserializer.open(in)
+  }
+
+  @Benchmark
+  def serialize(): Unit = {
+    out.reset()
+    serializer.serialize(value)
+  }
+
+  @Benchmark
+  def deserialize: AnyRef = {
+    in.reset()
+    deserializer.deserialize(null)
+  }
+}
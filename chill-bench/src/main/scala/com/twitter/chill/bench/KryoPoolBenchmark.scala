@@ -0,0 +1,66 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.{KryoPool, ScalaKryoInstantiator, SerDeState, ThreadAffineStore}
+import org.openjdk.jmh.annotations._
+
+/**
+ * Borrow/release throughput of the pool under contention. Each thread count is its own method so a single
+ * run shows how the queue-backed and thread-affine stores scale:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 .*KryoPoolBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+class KryoPoolBenchmark {
+  @Param(Array("queue", "threadAffine"))
+  var store: String = _
+
+  var pool: KryoPool = _
+
+  @Setup
+  def setup(): Unit = {
+    val size = 4 * Runtime.getRuntime.availableProcessors
+    val ki = new ScalaKryoInstantiator
+    pool = store match {
+      case "queue"        => KryoPool.withByteArrayOutputStream(size, ki)
+      case "threadAffine" => KryoPool.withByteArrayOutputStream(new ThreadAffineStore[SerDeState](size), ki)
+    }
+  }
+
+  private def borrowRelease(): SerDeState = {
+    val st = pool.borrow()
+    pool.release(st)
+    st
+  }
+
+  @Benchmark @Threads(1)
+  def borrowRelease01: SerDeState = borrowRelease()
+
+  @Benchmark @Threads(4)
+  def borrowRelease04: SerDeState = borrowRelease()
+
+  @Benchmark @Threads(16)
+  def borrowRelease16: SerDeState = borrowRelease()
+
+  @Benchmark @Threads(64)
+  def borrowRelease64: SerDeState = borrowRelease()
+}
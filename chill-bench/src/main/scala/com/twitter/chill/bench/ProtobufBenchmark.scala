@@ -0,0 +1,51 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.esotericsoftware.kryo.Kryo
+import com.google.protobuf.Message
+import com.twitter.chill.{IKryoRegistrar, KryoPool, ScalaKryoInstantiator}
+import com.twitter.chill.bench.protobuf.BenchMessages
+import com.twitter.chill.protobuf.ProtobufSerializer
+import org.openjdk.jmh.annotations._
+
+/**
+ * ProtobufSerializer, registered as the default serializer for Message:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*ProtobufBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ProtobufBenchmark extends RoundTripBenchmark {
+  @Param(Array("10", "1000"))
+  var values: Int = _
+
+  def init(): (KryoPool, AnyRef) = {
+    val event = BenchMessages.BenchEvent.newBuilder().setId(42L).setName("event")
+    (0 until values).foreach(i => event.addValues(i.toLong))
+    val reg = new IKryoRegistrar {
+      def apply(k: Kryo): Unit = {
+        k.addDefaultSerializer(classOf[Message], classOf[ProtobufSerializer])
+        k.register(classOf[BenchMessages.BenchEvent])
+      }
+    }
+    (KryoPool.withByteArrayOutputStream(1, (new ScalaKryoInstantiator).withRegistrar(reg)), event.build)
+  }
+}
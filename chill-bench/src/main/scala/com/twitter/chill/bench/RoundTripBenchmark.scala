@@ -0,0 +1,47 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import com.twitter.chill.KryoPool
+import org.openjdk.jmh.annotations._
+
+/**
+ * toBytesWithClass and fromBytes of one value. Subclasses pick the pool and value for their @Param settings,
+ * add -prof gc to the jmh:run arguments to see the bytes allocated per operation alongside the throughput.
+ */
+abstract class RoundTripBenchmark {
+  var pool: KryoPool = _
+  var value: AnyRef = _
+  var bytes: Array[Byte] = _
+
+  /** The pool to use and the value to write, for the current @Param values */
+  def init(): (KryoPool, AnyRef)
+
+  @Setup
+  def setup(): Unit = {
+    val (p, v) = init()
+    pool = p
+    value = v
+    bytes = p.toBytesWithClass(v)
+  }
+
+  @Benchmark
+  def toBytesWithClass: Array[Byte] = pool.toBytesWithClass(value)
+
+  @Benchmark
+  def fromBytes: AnyRef = pool.fromBytes(bytes)
+}
@@ -0,0 +1,72 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.{KryoPool, ScalaKryoInstantiator}
+import org.openjdk.jmh.annotations._
+
+import scala.collection.immutable.{HashSet, SortedMap}
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * The types AllScalaRegistrar registers, from the specialized Tuple2LongLongSerializer family to large
+ * collections:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*ScalaRegistrarBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ScalaRegistrarBenchmark extends RoundTripBenchmark {
+  @Param(
+    Array(
+      "tuple2LongLong",
+      "tuple2IntDouble",
+      "tuple3",
+      "option",
+      "list",
+      "vector",
+      "arrayBuffer",
+      "immutableMap",
+      "sortedMap",
+      "hashSet",
+      "tupleList"
+    )
+  )
+  var payload: String = _
+
+  def init(): (KryoPool, AnyRef) = {
+    val longs: (Long, Long) = (1L, Long.MaxValue)
+    val intDouble: (Int, Double) = (42, 3.14)
+    val v = payload match {
+      case "tuple2LongLong"  => longs
+      case "tuple2IntDouble" => intDouble
+      case "tuple3"          => (1, "two", 3.0)
+      case "option"          => Some("value")
+      case "list"            => List.tabulate(1000)(_.toLong)
+      case "vector"          => Vector.tabulate(1000)(_.toString)
+      case "arrayBuffer"     => ArrayBuffer.tabulate(1000)(_.toDouble)
+      case "immutableMap"    => (0 until 1000).map(i => i.toString -> i.toLong).toMap
+      case "sortedMap"       => SortedMap((0 until 1000).map(i => i -> i.toString): _*)
+      case "hashSet"         => HashSet((0 until 1000).map(_.toString): _*)
+      case "tupleList"       => List.tabulate(1000)(i => (i.toLong, i.toLong))
+    }
+    (KryoPool.withByteArrayOutputStream(1, new ScalaKryoInstantiator), v)
+  }
+}
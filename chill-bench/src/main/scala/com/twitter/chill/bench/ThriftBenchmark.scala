@@ -0,0 +1,63 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.esotericsoftware.kryo.Kryo
+import com.twitter.chill.{IKryoRegistrar, KryoPool, ScalaKryoInstantiator}
+import com.twitter.chill.scrooge.ScroogeThriftStructSerializer
+import com.twitter.chill.thrift.TBaseSerializer
+import com.twitter.scrooge.ThriftStruct
+import org.apache.thrift.TBase
+import org.openjdk.jmh.annotations._
+
+import scala.collection.JavaConverters._
+
+/**
+ * The same struct written by TBaseSerializer (Apache Thrift) and ScroogeThriftStructSerializer (Scrooge):
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 -prof gc .*ThriftBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class ThriftBenchmark extends RoundTripBenchmark {
+  @Param(Array("tbase", "scrooge"))
+  var serializer: String = _
+
+  @Param(Array("10", "1000"))
+  var values: Int = _
+
+  def init(): (KryoPool, AnyRef) = {
+    val longs = (0 until values).map(_.toLong)
+    val event: AnyRef = serializer match {
+      case "tbase" =>
+        new thrift.BenchEvent(42L, "event", longs.map(Long.box).asJava)
+      case "scrooge" =>
+        scrooge.BenchEvent(id = 42L, name = "event", values = longs)
+    }
+    val reg = new IKryoRegistrar {
+      def apply(k: Kryo): Unit = {
+        k.addDefaultSerializer(classOf[TBase[_, _]], classOf[TBaseSerializer])
+        k.addDefaultSerializer(classOf[ThriftStruct], classOf[ScroogeThriftStructSerializer[_]])
+        k.register(event.getClass)
+      }
+    }
+    (KryoPool.withByteArrayOutputStream(1, (new ScalaKryoInstantiator).withRegistrar(reg)), event)
+  }
+}
@@ -0,0 +1,64 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill.bench
+
+import _root_.java.util.concurrent.TimeUnit
+
+import com.twitter.chill.{KryoPool, ScalaKryoInstantiator}
+import org.openjdk.jmh.annotations._
+
+/**
+ * Round trips of primitive-heavy payloads through the safe (withBuffer) and unsafe (withUnsafeBuffer) streams:
+ *
+ * sbt "chill-bench/jmh:run -f1 -wi 3 -i 5 .*UnsafeStreamsBenchmark.*"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+class UnsafeStreamsBenchmark {
+  @Param(Array("safe", "unsafe"))
+  var streams: String = _
+
+  @Param(Array("longArray", "doubleArray", "tupleVector", "tupleList"))
+  var payload: String = _
+
+  var pool: KryoPool = _
+  var value: AnyRef = _
+  var bytes: Array[Byte] = _
+
+  @Setup
+  def setup(): Unit = {
+    val ki = new ScalaKryoInstantiator
+    pool = streams match {
+      case "safe"   => KryoPool.withBuffer(1, ki, 1 << 16, -1)
+      case "unsafe" => KryoPool.withUnsafeBuffer(1, ki, 1 << 16, -1)
+    }
+    value = payload match {
+      case "longArray"   => Array.tabulate(10000)(i => i.toLong * 1000003L)
+      case "doubleArray" => Array.tabulate(10000)(i => i * 0.37)
+      case "tupleVector" => Vector.tabulate(1000)(i => (i.toLong, i * 0.5))
+      case "tupleList"   => List.tabulate(1000)(i => (i.toLong, i.toLong << 20))
+    }
+    bytes = pool.toBytesWithClass(value)
+  }
+
+  @Benchmark
+  def serialize: Array[Byte] = pool.toBytesWithClass(value)
+
+  @Benchmark
+  def deserialize: AnyRef = pool.fromBytes(bytes)
+}
@@ -0,0 +1,7 @@
+#@namespace scala com.twitter.chill.bench.scrooge
+
+struct BenchEvent {
+  1: i64 id
+  2: string name
+  3: list<i64> values
+}
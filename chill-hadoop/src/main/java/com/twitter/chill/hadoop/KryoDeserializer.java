@@ -20,17 +20,28 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.serializer.Deserializer;
 
 import com.twitter.chill.KryoPool;
 import com.twitter.chill.SerDeState;
 
+/** Reads the records KryoSerializer writes, each a varint length and then the bytes.
+ *
+ * One SerDeState is borrowed from the pool for as long as the deserializer is open.
+ * Records in a DataInputBuffer, as in the shuffle, are decoded in place from its
+ * array; from any other stream they are read into a scratch buffer that is kept
+ * and grown as needed. So nothing is allocated per record but the result.
+ */
 public class KryoDeserializer implements Deserializer<Object> {
+    private static final int MIN_SCRATCH_SIZE = 1 << 8;
 
     private final KryoPool kryoPool;
     private final Class<Object> klass;
 
     private DataInputStream inputStream;
+    private SerDeState st;
+    private byte[] scratch;
 
     public KryoDeserializer(KryoPool kp, Class<Object> klass) {
         this.kryoPool = kp;
@@ -42,13 +53,32 @@ public class KryoDeserializer implements Deserializer<Object> {
             inputStream = (DataInputStream) in;
         else
             inputStream = new DataInputStream( in );
+        if( st == null )
+            st = kryoPool.borrow();
     }
 
     public Object deserialize(Object o) throws IOException {
-        // TODO, we could share these buffers if we see that alloc is bottlenecking
-        byte[] bytes = new byte[Varint.readUnsignedVarInt(inputStream)];
-        inputStream.readFully( bytes );
-        return kryoPool.fromBytes(bytes, klass);
+        int size = Varint.readUnsignedVarInt(inputStream);
+        if( inputStream instanceof DataInputBuffer ) {
+            DataInputBuffer buf = (DataInputBuffer) inputStream;
+            int position = buf.getPosition();
+            // getLength is the end of the buffer's valid data, not what is left of it
+            if( size <= buf.getLength() - position ) {
+                st.setInput(buf.getData(), position, size);
+                try {
+                    return st.readObject(klass);
+                } finally {
+                    inputStream.skipBytes(size);
+                }
+            }
+        }
+        if( scratch == null || scratch.length < size ) {
+            int doubled = scratch == null ? MIN_SCRATCH_SIZE : 2 * scratch.length;
+            scratch = new byte[Math.max(size, doubled)];
+        }
+        inputStream.readFully( scratch, 0, size );
+        st.setInput(scratch, 0, size);
+        return st.readObject(klass);
     }
 
     public void close() throws IOException {
@@ -57,6 +87,11 @@ public class KryoDeserializer implements Deserializer<Object> {
                 inputStream.close();
         } finally {
             inputStream = null;
+            scratch = null;
+            if( st != null ) {
+                kryoPool.release(st);
+                st = null;
+            }
         }
     }
 }
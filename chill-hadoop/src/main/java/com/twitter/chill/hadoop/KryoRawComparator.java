@@ -0,0 +1,86 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill.hadoop;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparator;
+
+import com.twitter.chill.KryoPool;
+
+/** Sorts map output keys written by KryoSerializer, see KryoSerialization.setOrderedKeys.
+ *
+ * Keys of a class OrderedSerializer handles are compared by their normalized
+ * keys, if any, a long at a time, and then byte by byte, unless either is a tuple
+ * holding some other type. Those, and keys of any other class, are deserialized
+ * and compared with OrderedSerializer.compare.
+ */
+public class KryoRawComparator extends Configured implements RawComparator<Object> {
+  private KryoPool kryoPool;
+  private Class<?> keyClass;
+  private boolean ordered;
+  private int normalizedKeyBytes;
+
+  /** Hadoop makes comparators with this, then calls setConf */
+  public KryoRawComparator() {
+    super();
+  }
+
+  public KryoRawComparator(Configuration conf) {
+    super(conf);
+  }
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if(conf != null) {
+      kryoPool = new KryoSerialization(conf).kryoPool;
+      keyClass = KryoSerialization.mapOutputKeyClass(conf);
+      OrderedSerializer.Registrar keys = KryoSerialization.orderedKeys(conf);
+      ordered = keys != null && OrderedSerializer.handles(keyClass);
+      normalizedKeyBytes = ordered ? keys.getNormalizedKeyBytes() : 0;
+    }
+  }
+
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    // Skip the lengths KryoSerializer writes first
+    int p1 = skipVarInt(b1, s1);
+    int p2 = skipVarInt(b2, s2);
+    int n1 = l1 - (p1 - s1);
+    int n2 = l2 - (p2 - s2);
+    int k = normalizedKeyBytes;
+    for(int i = 0; i < k; i += 8) {
+      int c = Long.compareUnsigned(WritableComparator.readLong(b1, p1 + i), WritableComparator.readLong(b2, p2 + i));
+      if(c != 0) { return c; }
+    }
+    if(ordered && (b1[p1 + k] & 0xFF) != OrderedSerializer.FALLBACK && (b2[p2 + k] & 0xFF) != OrderedSerializer.FALLBACK) {
+      return WritableComparator.compareBytes(b1, p1 + k, n1 - k, b2, p2 + k, n2 - k);
+    }
+    // The serializer skips the normalized key itself
+    return compare(kryoPool.fromBytes(b1, p1, n1, keyClass), kryoPool.fromBytes(b2, p2, n2, keyClass));
+  }
+
+  public int compare(Object a, Object b) {
+    return OrderedSerializer.compare(a, b);
+  }
+
+  private static int skipVarInt(byte[] b, int s) {
+    while((b[s] & 0x80) != 0) { s++; }
+    return s + 1;
+  }
+}
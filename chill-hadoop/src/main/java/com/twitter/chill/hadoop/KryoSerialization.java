@@ -21,47 +21,197 @@ import com.esotericsoftware.kryo.io.Output;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.Serialization;
 import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.JobConf;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 
 import com.twitter.chill.KryoPool;
+import com.twitter.chill.PoolStats;
 import com.twitter.chill.KryoInstantiator;
 import com.twitter.chill.config.Config;
 import com.twitter.chill.config.ConfiguredInstantiator;
 import com.twitter.chill.config.ConfigurationException;
 
-import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class KryoSerialization extends Configured implements Serialization<Object> {
     // can't be final because we need to set them in setConf (for Configured)
     KryoPool kryoPool;
 
-    private static KryoPool cachedPool = null;
-    private static KryoInstantiator cachedKryoInst = null;
+    /**
+     * System property bounding how many pools are kept, one per instantiator config,
+     * ordered keys setting, pool size, metrics setting and context class loader, so a
+     * JVM switching between configurations
+     * (local mode, reused task JVMs, different map and reduce settings) keeps their
+     * warm Kryos. Defaults to DEFAULT_POOL_CACHE_SIZE. See setPoolCacheSize.
+     */
+    public static final String POOL_CACHE_SIZE = "com.twitter.chill.hadoop.poolcachesize";
+    public static final int DEFAULT_POOL_CACHE_SIZE = 8;
+
+    private static volatile int poolCacheSize = Math.max(1, Integer.getInteger(POOL_CACHE_SIZE, DEFAULT_POOL_CACHE_SIZE));
+    private static final ConcurrentHashMap<PoolKey, KryoPool> POOLS = new ConcurrentHashMap<PoolKey, KryoPool>();
+    // Cached pool keys, oldest first, which is the order they are evicted in
+    private static final ConcurrentLinkedQueue<PoolKey> POOL_ORDER = new ConcurrentLinkedQueue<PoolKey>();
+
+    private static final class PoolKey {
+      final KryoInstantiator kryoInst;
+      final OrderedSerializer.Registrar orderedKeys;
+      final int poolSize;
+      final boolean metrics;
+      // Classes are resolved through it, both by the instantiator and by the Kryos it makes
+      final ClassLoader loader;
+
+      PoolKey(KryoInstantiator kryoInst, OrderedSerializer.Registrar orderedKeys, int poolSize, boolean metrics) {
+        this.kryoInst = kryoInst;
+        this.orderedKeys = orderedKeys;
+        this.poolSize = poolSize;
+        this.metrics = metrics;
+        this.loader = Thread.currentThread().getContextClassLoader();
+      }
+
+      @Override
+      public boolean equals(Object o) {
+        if(!(o instanceof PoolKey)) { return false; }
+        PoolKey that = (PoolKey)o;
+        return poolSize == that.poolSize && metrics == that.metrics && loader == that.loader
+          && kryoInst.equals(that.kryoInst)
+          && (orderedKeys == null ? that.orderedKeys == null : orderedKeys.equals(that.orderedKeys));
+      }
+
+      @Override
+      public int hashCode() {
+        int h = 31 * kryoInst.hashCode() + (orderedKeys == null ? 0 : orderedKeys.hashCode());
+        h = 31 * (31 * h + poolSize) + (metrics ? 1 : 0);
+        return 31 * h + System.identityHashCode(loader);
+      }
+    }
 
     /**
      * Hadoop will re-initialize the KryoSerialization on every spill
      * This gets very expensive if you output a lot from a mapper to initialize the chill/kryo stack
      * The KryoInstantiator's already do some caching, and figuring out if its safe to cache,
-     * so here we piggy back on that to avoid generating new kryo's or kryo pools
+     * so here we piggy back on that to avoid generating new kryo's or kryo pools.
+     * ConfiguredInstantiators built from the same config are equal, so they share the pool.
+     */
+    public static void resetOrUpdateFromCache(KryoSerialization instance, KryoInstantiator kryoInst){
+      resetOrUpdateFromCache(instance, kryoInst, null);
+    }
+
+    /** As above, applying orderedKeys on top of kryoInst unless it is null */
+    public static void resetOrUpdateFromCache(KryoSerialization instance, KryoInstantiator kryoInst,
+        OrderedSerializer.Registrar orderedKeys){
+      resetOrUpdateFromCache(instance, kryoInst, orderedKeys, MAX_CACHED_KRYO);
+    }
+
+    /** As above, with a pool of poolSize. Lookups take no lock; two threads missing
+     * at once may both build a pool, and all but one are dropped unused.
+     */
+    public static void resetOrUpdateFromCache(KryoSerialization instance, KryoInstantiator kryoInst,
+        OrderedSerializer.Registrar orderedKeys, int poolSize){
+      resetOrUpdateFromCache(instance, kryoInst, orderedKeys, poolSize, false);
+    }
+
+    /** As above, with metrics recorded into the POOL_STATS_NAME PoolStats if metrics is true.
+     * Pools are also kept apart by the calling thread's context class loader.
      */
-    public static synchronized void resetOrUpdateFromCache(KryoSerialization instance, KryoInstantiator kryoInst){
-      if(kryoInst != cachedKryoInst) {
-        cachedPool = KryoPool.withByteArrayOutputStream(MAX_CACHED_KRYO, kryoInst);
-        cachedKryoInst = kryoInst;
+    public static void resetOrUpdateFromCache(KryoSerialization instance, KryoInstantiator kryoInst,
+        OrderedSerializer.Registrar orderedKeys, int poolSize, boolean metrics){
+      PoolKey key = new PoolKey(kryoInst, orderedKeys, poolSize, metrics);
+      KryoPool pool = POOLS.get(key);
+      if(pool == null) {
+        KryoInstantiator ki = orderedKeys == null ? kryoInst : kryoInst.withRegistrar(orderedKeys);
+        KryoPool fresh = KryoPool.withByteArrayOutputStream(poolSize, ki);
+        if(metrics) { fresh.setInstrumentation(PoolStats.named(POOL_STATS_NAME)); }
+        pool = POOLS.putIfAbsent(key, fresh);
+        if(pool == null) {
+          pool = fresh;
+          POOL_ORDER.add(key);
+          evictOver(poolCacheSize);
+        }
+      }
+      instance.kryoPool = pool;
+    }
+
+    private static void evictOver(int size) {
+      while(POOLS.size() > size) {
+        PoolKey oldest = POOL_ORDER.poll();
+        if(oldest == null) { return; }
+        POOLS.remove(oldest);
       }
-      instance.kryoPool = cachedPool;
     }
 
+    /** Keep at most size pools from now on, at least 1. Overrides the POOL_CACHE_SIZE system property. */
+    public static void setPoolCacheSize(int size) {
+      poolCacheSize = Math.max(1, size);
+      evictOver(poolCacheSize);
+    }
+
+    public static int getPoolCacheSize() { return poolCacheSize; }
+
     /**
-     * Since each thread only needs 1 Kryo, the pool doesn't need more
-     * space than the number of threads. We guess that there are 4 hyperthreads /
-     * core and then multiple by the nember of cores.
+     * No longer used, set the KryoPool.POOL_SIZE system property instead.
      */
+    @Deprecated
     protected static int GUESS_THREADS_PER_CORE = 4;
-    protected static int MAX_CACHED_KRYO = GUESS_THREADS_PER_CORE * Runtime.getRuntime().availableProcessors();
+    /**
+     * Since each thread only needs 1 Kryo, the pool doesn't need more
+     * space than the number of threads. See KryoPool.defaultPoolSize()
+     * Jobs can set KryoPool.POOL_SIZE in their Configuration instead.
+     */
+    protected static int MAX_CACHED_KRYO = KryoPool.defaultPoolSize();
+
+    /** Name of the PoolStats this serialization records into when KryoPool.POOL_METRICS is set */
+    public static final String POOL_STATS_NAME = "com.twitter.chill.hadoop";
+
+    /** Set to true to write primitive wrappers, Strings and Scala tuples with an OrderedSerializer */
+    public static final String ORDERED_KEYS = "com.twitter.chill.hadoop.orderedkeys";
+
+    /** Hadoop 1's name for the map output key comparator, which Hadoop 2 still maps to its own */
+    static final String KEY_COMPARATOR = "mapred.output.key.comparator.class";
+
+    /**
+     * Bytes of normalized key map output keys start with, when ORDERED_KEYS is set.
+     * A multiple of 8, as they are compared a long at a time; 0, the default, writes none.
+     */
+    public static final String NORMALIZED_KEY_BYTES = "com.twitter.chill.hadoop.normalizedkeybytes";
+
+    /**
+     * Write primitive wrappers, Strings and Scala tuples of them in an order-preserving
+     * form, and sort map output keys with a KryoRawComparator, which compares those
+     * without deserializing them. This changes how these classes are written everywhere
+     * in the job, not only in keys, so anything written this way has to be read this way too.
+     */
+    public static void setOrderedKeys(Configuration conf) {
+        conf.setBoolean(ORDERED_KEYS, true);
+        conf.setClass(KEY_COMPARATOR, KryoRawComparator.class, RawComparator.class);
+    }
+
+    /**
+     * Like setOrderedKeys, and start every map output key with a normalized key of
+     * normalizedKeyBytes (8 or 16 is plenty for most keys), see OrderedSerializer.
+     * Values of the key's class, or any tuples if the key is one, get it too.
+     */
+    public static void setOrderedKeys(HadoopConfig conf, int normalizedKeyBytes) {
+        OrderedSerializer.checkNormalizedKeyBytes(normalizedKeyBytes);
+        setOrderedKeys(conf.conf);
+        conf.set(NORMALIZED_KEY_BYTES, Integer.toString(normalizedKeyBytes));
+    }
+
+    /** How map output keys are written, or null if ORDERED_KEYS is not set */
+    static OrderedSerializer.Registrar orderedKeys(Configuration conf) {
+        if(!conf.getBoolean(ORDERED_KEYS, false)) { return null; }
+        int bytes = new HadoopConfig(conf).getInt(NORMALIZED_KEY_BYTES, 0);
+        if(bytes == 0) { return new OrderedSerializer.Registrar(); }
+        return new OrderedSerializer.Registrar(bytes, mapOutputKeyClass(conf));
+    }
+
+    static Class<?> mapOutputKeyClass(Configuration conf) {
+        return (conf instanceof JobConf ? (JobConf)conf : new JobConf(conf)).getMapOutputKeyClass();
+    }
 
     /** By default, this is the constructor used by Hadoop.
      * It will first call this, then setConf.
@@ -86,7 +236,8 @@ public class KryoSerialization extends Configured implements Serialization<Objec
 	if (conf != null) {
 	    try {
 		KryoInstantiator kryoInst = new ConfiguredInstantiator(new HadoopConfig(conf));
-        resetOrUpdateFromCache(this, kryoInst);
+        resetOrUpdateFromCache(this, kryoInst, orderedKeys(conf), conf.getInt(KryoPool.POOL_SIZE, MAX_CACHED_KRYO),
+            conf.getBoolean(KryoPool.POOL_METRICS, false));
 	    }
 	    catch(ConfigurationException cx) {
 		// This interface can't throw
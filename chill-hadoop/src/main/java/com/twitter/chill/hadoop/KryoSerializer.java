@@ -18,51 +18,69 @@ package com.twitter.chill.hadoop;
 
 import org.apache.hadoop.io.serializer.Serializer;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import com.twitter.chill.KryoPool;
 import com.twitter.chill.SerDeState;
 
+/** Writes each record as a varint length and then the bytes, see KryoDeserializer.
+ *
+ * One SerDeState is borrowed from the pool for as long as the serializer is open,
+ * and each record is serialized straight after the room reserved for its length,
+ * then handed to the stream in one write. The stream is flushed on close().
+ */
 public class KryoSerializer implements Serializer<Object> {
     private final KryoPool kryoPool;
-    private DataOutputStream outputStream;
+    private final int bufferSize;
+    private OutputStream outputStream;
+    private SerDeState st;
 
     public KryoSerializer(KryoPool kp) {
+      this(kp, 0);
+    }
+
+    /** Hold records back until bufferSize bytes have been serialized, and write them
+     * to the stream together. Only for streams nothing looks at between records:
+     * Hadoop's map output buffer and SequenceFile measure each record as it is
+     * serialized, so KryoSerialization always uses 0, which writes every record out
+     * before serialize returns.
+     */
+    public KryoSerializer(KryoPool kp, int bufferSize) {
       kryoPool = kp;
+      this.bufferSize = bufferSize;
     }
 
     public void open(OutputStream out) throws IOException {
-        if(out instanceof DataOutputStream)
-            outputStream = (DataOutputStream)out;
-        else
-            outputStream = new DataOutputStream(out);
+        outputStream = out;
+        if(st == null)
+            st = kryoPool.borrow();
     }
 
     public void serialize(Object o) throws IOException {
-        // The outputs are borrowed in a clean state, ready to use
-        SerDeState st = kryoPool.borrow();
-        try {
-          st.writeObject(o);
-          // Copy from buffer to output stream.
-          Varint.writeUnsignedVarInt(st.numOfWrittenBytes(), outputStream);
-          st.writeOutputTo(outputStream);
-        }
-        finally {
-          kryoPool.release(st);
-        }
-        outputStream.flush();
+        st.writeLengthPrefixed(o);
+        if(st.numOfWrittenBytes() >= bufferSize)
+            writeBuffered();
+    }
+
+    private void writeBuffered() throws IOException {
+        st.writeOutputTo(outputStream);
+        st.clear();
     }
 
     public void close() throws IOException {
         try {
             if(outputStream != null) {
+                if(st.numOfWrittenBytes() > 0)
+                    writeBuffered();
                 outputStream.close();
             }
         } finally {
             outputStream = null;
+            if(st != null) {
+                kryoPool.release(st);
+                st = null;
+            }
         }
     }
 }
@@ -0,0 +1,501 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill.hadoop;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.ReferenceResolver;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.twitter.chill.IKryoRegistrar;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/** Writes primitive wrappers, Strings and Scala tuples of them so that comparing
+ * the bytes as unsigned, lexicographically, orders them as compareTo would.
+ *
+ * Every value starts with a tag byte for its type, so values of different types
+ * order by tag. Numbers are written big endian with the sign flipped (and, for
+ * negative floating point numbers, every other bit too), Strings as their chars
+ * in a variable length code ended by 0, and tuples as their arity's tag followed
+ * by their elements. Tuples are ordered by arity, then element by element.
+ *
+ * A tuple holding anything else is written with a FALLBACK tag and its elements
+ * with their own serializers; such keys have to be deserialized to be compared,
+ * see KryoRawComparator. The tuple classes are looked up by name, so this needs
+ * no Scala on the classpath unless tuples are written.
+ *
+ * Given a normalized key size, top level values start with that many bytes of
+ * the ordered form of their leading fields, up to the first field of another
+ * type and padded with 0, so most keys can be told apart by a long compare or two
+ * even when the rest of them has to be deserialized.
+ */
+public class OrderedSerializer extends Serializer<Object> {
+  static final int NULL = 0x00;
+  static final int BOOLEAN = 0x01;
+  static final int BYTE = 0x02;
+  static final int SHORT = 0x03;
+  static final int CHAR = 0x04;
+  static final int INT = 0x05;
+  static final int LONG = 0x06;
+  static final int FLOAT = 0x07;
+  static final int DOUBLE = 0x08;
+  static final int STRING = 0x09;
+  // Plus the arity
+  static final int TUPLE = 0x20;
+  static final int FALLBACK = 0xFF;
+
+  static final int MAX_ARITY = 22;
+  // Tuple classes scala specializes, by arity and the letters of their element types
+  private static final String[][] SPECIALIZED = {
+    { "I", "J", "D" },
+    { "I", "J", "D", "C", "Z" }
+  };
+
+  private static final Class<?>[] SCALARS = {
+    Boolean.class, Byte.class, Short.class, Character.class, Integer.class,
+    Long.class, Float.class, Double.class, String.class
+  };
+
+  // The generic tuple classes read tuples are made as, by arity
+  private final Tuple[] tuples = new Tuple[MAX_ARITY + 1];
+  private final int normalizedKeyBytes;
+  // Where the ordered form of a tuple is built, as far as its elements can be ordered
+  private final Output scratch = new Output(64, -1);
+
+  public OrderedSerializer() {
+    this(0);
+  }
+
+  /** @param normalizedKeyBytes the size of the normalized key top level values start with, or 0 for none */
+  public OrderedSerializer(int normalizedKeyBytes) {
+    super(false, true);
+    if(normalizedKeyBytes < 0) { throw new IllegalArgumentException("Negative normalized key size: " + normalizedKeyBytes); }
+    this.normalizedKeyBytes = normalizedKeyBytes;
+  }
+
+  public int getNormalizedKeyBytes() { return normalizedKeyBytes; }
+
+  /** Registers an OrderedSerializer for the primitive wrappers, String, and,
+   * if scala is on the Kryo's classpath, every tuple class.
+   *
+   * With a normalized key size, values of keyClass (or of any tuple class, if it
+   * is one) start with a normalized key of that size. All of them do, values too.
+   * If the Kryo tracks references, it stops tracking them for these classes, so
+   * their bytes start with their tag.
+   */
+  public static class Registrar implements IKryoRegistrar {
+    private final int normalizedKeyBytes;
+    private final Class<?> keyClass;
+
+    public Registrar() {
+      this(0, null);
+    }
+
+    /** @param normalizedKeyBytes a multiple of 8, as KryoRawComparator compares them a long at a time */
+    public Registrar(int normalizedKeyBytes, Class<?> keyClass) {
+      checkNormalizedKeyBytes(normalizedKeyBytes);
+      this.normalizedKeyBytes = keyClass == null ? 0 : normalizedKeyBytes;
+      this.keyClass = keyClass;
+    }
+
+    @Override
+    public void apply(Kryo k) {
+      // A reference marker would come before the tag KryoRawComparator reads
+      if(k.getReferences() && !(k.getReferenceResolver() instanceof Unreferenced)) {
+        k.setReferenceResolver(new Unreferenced(k.getReferenceResolver()));
+      }
+      OrderedSerializer plain = new OrderedSerializer();
+      OrderedSerializer keys = normalizedKeyBytes == 0 ? plain : new OrderedSerializer(normalizedKeyBytes);
+      for(Class<?> c : SCALARS) { k.register(c, c == keyClass ? keys : plain); }
+      OrderedSerializer tupleSer = keyClass != null && TUPLES.get(keyClass) != null ? keys : plain;
+      for(int arity = 1; arity <= MAX_ARITY; arity++) {
+        Class<?> c = load(k, "scala.Tuple" + arity);
+        if(c == null) { return; }
+        k.register(c, tupleSer);
+      }
+      for(int arity = 1; arity <= SPECIALIZED.length; arity++) {
+        for(String name : specializedNames(arity)) {
+          Class<?> c = load(k, "scala.Tuple" + arity + "$mc" + name + "$sp");
+          if(c != null) { k.register(c, tupleSer); }
+        }
+      }
+    }
+
+    public int getNormalizedKeyBytes() { return normalizedKeyBytes; }
+
+    @Override
+    public boolean equals(Object o) {
+      if(!(o instanceof Registrar)) { return false; }
+      Registrar that = (Registrar)o;
+      return normalizedKeyBytes == that.normalizedKeyBytes && keyClass == that.keyClass;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * normalizedKeyBytes + (keyClass == null ? 0 : keyClass.hashCode());
+    }
+
+    private static String[] specializedNames(int arity) {
+      String[] letters = SPECIALIZED[arity - 1];
+      String[] names = new String[(int)Math.pow(letters.length, arity)];
+      for(int i = 0; i < names.length; i++) {
+        StringBuilder sb = new StringBuilder();
+        for(int n = i, j = 0; j < arity; j++, n /= letters.length) { sb.append(letters[n % letters.length]); }
+        names[i] = sb.toString();
+      }
+      return names;
+    }
+  }
+
+  // Tracks references as the wrapped resolver does, but never for classes OrderedSerializer handles
+  private static final class Unreferenced implements ReferenceResolver {
+    private final ReferenceResolver resolver;
+
+    Unreferenced(ReferenceResolver resolver) { this.resolver = resolver; }
+
+    public void setKryo(Kryo kryo) { resolver.setKryo(kryo); }
+    public int getWrittenId(Object object) { return resolver.getWrittenId(object); }
+    public int addWrittenObject(Object object) { return resolver.addWrittenObject(object); }
+    @SuppressWarnings("rawtypes")
+    public int nextReadId(Class type) { return resolver.nextReadId(type); }
+    public void setReadObject(int id, Object object) { resolver.setReadObject(id, object); }
+    @SuppressWarnings("rawtypes")
+    public Object getReadObject(Class type, int id) { return resolver.getReadObject(type, id); }
+    public void reset() { resolver.reset(); }
+    @SuppressWarnings("rawtypes")
+    public boolean useReferences(Class type) { return !handles(type) && resolver.useReferences(type); }
+  }
+
+  static void checkNormalizedKeyBytes(int bytes) {
+    if(bytes < 0 || bytes % 8 != 0) {
+      throw new IllegalArgumentException("Normalized keys must be a multiple of 8 bytes, not " + bytes);
+    }
+  }
+
+  private static Class<?> load(Kryo k, String name) {
+    try {
+      return Class.forName(name, false, k.getClassLoader());
+    }
+    catch(ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  /** True if instances of cls, when registered with this serializer, can be
+   * compared without deserializing them (but for tuples holding other types)
+   */
+  public static boolean handles(Class<?> cls) {
+    if(cls == null) { return false; }
+    for(Class<?> c : SCALARS) {
+      if(c == cls) { return true; }
+    }
+    return TUPLES.get(cls) != null;
+  }
+
+  @Override
+  public void write(Kryo kryo, Output output, Object obj) {
+    boolean normalized = normalizedKeyBytes > 0 && kryo.getDepth() == 1;
+    int tag = obj == null ? NULL : scalarTag(obj);
+    if(tag != FALLBACK && !normalized) {
+      writeScalar(output, tag, obj);
+      return;
+    }
+    // One walk both writes a tuple and finds whether all of it can be ordered
+    scratch.clear();
+    boolean ordered = writeLeading(scratch, obj);
+    if(normalized) {
+      int n = Math.min(normalizedKeyBytes, scratch.position());
+      output.writeBytes(scratch.getBuffer(), 0, n);
+      for(int i = n; i < normalizedKeyBytes; i++) { output.writeByte(0); }
+    }
+    if(ordered) {
+      output.writeBytes(scratch.getBuffer(), 0, scratch.position());
+      return;
+    }
+    Tuple t = TUPLES.get(obj.getClass());
+    if(t == null) { throw new KryoException("Cannot write " + obj.getClass() + " with OrderedSerializer"); }
+    output.writeByte(FALLBACK);
+    output.writeByte(t.arity);
+    for(int i = 0; i < t.arity; i++) { kryo.writeClassAndObject(output, t.get(obj, i)); }
+  }
+
+  @Override
+  public Object read(Kryo kryo, Input input, Class<Object> type) {
+    if(normalizedKeyBytes > 0 && kryo.getDepth() == 1) { input.skip(normalizedKeyBytes); }
+    int tag = input.readByte() & 0xFF;
+    if(tag != FALLBACK) { return readOrdered(kryo, input, tag); }
+    int arity = input.readByte();
+    Object[] elements = new Object[arity];
+    for(int i = 0; i < arity; i++) { elements[i] = kryo.readClassAndObject(input); }
+    return tuple(kryo, arity).make(elements);
+  }
+
+  private Tuple tuple(Kryo kryo, int arity) {
+    if(arity < 1 || arity > MAX_ARITY) { throw new KryoException("Not a tuple arity: " + arity); }
+    Tuple t = tuples[arity];
+    if(t == null) {
+      Class<?> c = load(kryo, "scala.Tuple" + arity);
+      if(c == null) { throw new KryoException("Cannot read a tuple without scala on the classpath"); }
+      t = TUPLES.get(c);
+      tuples[arity] = t;
+    }
+    return t;
+  }
+
+  /** Write the ordered form of obj, or of a tuple's leading fields up to one of another type.
+   * @return true if all of obj was written
+   */
+  private static boolean writeLeading(Output out, Object obj) {
+    int tag = obj == null ? NULL : scalarTag(obj);
+    if(tag != FALLBACK) {
+      writeScalar(out, tag, obj);
+      return true;
+    }
+    Tuple t = TUPLES.get(obj.getClass());
+    if(t == null) { return false; }
+    out.writeByte(TUPLE + t.arity);
+    for(int i = 0; i < t.arity; i++) {
+      if(!writeLeading(out, t.get(obj, i))) { return false; }
+    }
+    return true;
+  }
+
+  private static int scalarTag(Object obj) {
+    if(obj instanceof String) { return STRING; }
+    if(obj instanceof Integer) { return INT; }
+    if(obj instanceof Long) { return LONG; }
+    if(obj instanceof Double) { return DOUBLE; }
+    if(obj instanceof Boolean) { return BOOLEAN; }
+    if(obj instanceof Float) { return FLOAT; }
+    if(obj instanceof Short) { return SHORT; }
+    if(obj instanceof Byte) { return BYTE; }
+    if(obj instanceof Character) { return CHAR; }
+    return FALLBACK;
+  }
+
+  // The tag obj is written with, when it is ordered
+  static int tag(Object obj) {
+    if(obj == null) { return NULL; }
+    int tag = scalarTag(obj);
+    if(tag != FALLBACK) { return tag; }
+    Tuple t = TUPLES.get(obj.getClass());
+    return t == null ? FALLBACK : TUPLE + t.arity;
+  }
+
+  // Write the tag and ordered form of a scalar, or null
+  private static void writeScalar(Output out, int tag, Object obj) {
+    out.writeByte(tag);
+    switch(tag) {
+      case NULL: break;
+      case BOOLEAN: out.writeByte(((Boolean)obj) ? 1 : 0); break;
+      case BYTE: out.writeByte(((Byte)obj) ^ 0x80); break;
+      case SHORT: writeBigEndian(out, ((Short)obj) ^ 0x8000, 2); break;
+      case CHAR: writeBigEndian(out, (Character)obj, 2); break;
+      case INT: writeBigEndian(out, ((Integer)obj) ^ Integer.MIN_VALUE, 4); break;
+      case LONG: writeBigEndian(out, ((Long)obj) ^ Long.MIN_VALUE, 8); break;
+      case FLOAT: {
+        int bits = Float.floatToIntBits((Float)obj);
+        writeBigEndian(out, bits ^ ((bits >> 31) | Integer.MIN_VALUE), 4);
+        break;
+      }
+      case DOUBLE: {
+        long bits = Double.doubleToLongBits((Double)obj);
+        writeBigEndian(out, bits ^ ((bits >> 63) | Long.MIN_VALUE), 8);
+        break;
+      }
+      case STRING: writeString(out, (String)obj); break;
+      default: throw new IllegalArgumentException("Not a scalar tag: " + tag);
+    }
+  }
+
+  private Object readOrdered(Kryo kryo, Input in, int tag) {
+    switch(tag) {
+      case NULL: return null;
+      case BOOLEAN: return in.readByte() != 0;
+      case BYTE: return (byte)(in.readByte() ^ 0x80);
+      case SHORT: return (short)(readBigEndian(in, 2) ^ 0x8000);
+      case CHAR: return (char)readBigEndian(in, 2);
+      case INT: return (int)readBigEndian(in, 4) ^ Integer.MIN_VALUE;
+      case LONG: return readBigEndian(in, 8) ^ Long.MIN_VALUE;
+      case FLOAT: {
+        int bits = (int)readBigEndian(in, 4) ^ Integer.MIN_VALUE;
+        return Float.intBitsToFloat(bits ^ ((bits >> 31) & Integer.MAX_VALUE));
+      }
+      case DOUBLE: {
+        long bits = readBigEndian(in, 8) ^ Long.MIN_VALUE;
+        return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+      }
+      case STRING: return readString(in);
+      default: {
+        Tuple t = tuple(kryo, tag - TUPLE);
+        Object[] elements = new Object[t.arity];
+        for(int i = 0; i < t.arity; i++) { elements[i] = readOrdered(kryo, in, in.readByte() & 0xFF); }
+        return t.make(elements);
+      }
+    }
+  }
+
+  // Output.writeInt and friends are native order on an UnsafeOutput
+  private static void writeBigEndian(Output out, long v, int bytes) {
+    for(int shift = 8 * (bytes - 1); shift >= 0; shift -= 8) { out.writeByte((int)(v >>> shift)); }
+  }
+
+  private static long readBigEndian(Input in, int bytes) {
+    long v = 0;
+    for(int i = 0; i < bytes; i++) { v = (v << 8) | (in.readByte() & 0xFF); }
+    return v;
+  }
+
+  // Chars below 0x7F take one byte, 1 to 0x7F; chars below 0x407F two, starting
+  // 0x80 to 0xBF; the rest three, starting 0xC0. So 0 ends the string, and the
+  // bytes order like the chars.
+  private static final int ONE_BYTE_END = 0x7F;
+  private static final int TWO_BYTE_END = ONE_BYTE_END + 0x4000;
+
+  private static void writeString(Output out, String s) {
+    for(int i = 0; i < s.length(); i++) {
+      int c = s.charAt(i);
+      if(c < ONE_BYTE_END) { out.writeByte(c + 1); }
+      else if(c < TWO_BYTE_END) {
+        int v = c - ONE_BYTE_END;
+        out.writeByte(0x80 | (v >>> 8));
+        out.writeByte(v);
+      }
+      else {
+        out.writeByte(0xC0);
+        out.writeByte(c >>> 8);
+        out.writeByte(c);
+      }
+    }
+    out.writeByte(0);
+  }
+
+  private static String readString(Input in) {
+    StringBuilder sb = new StringBuilder();
+    for(int b = in.readByte() & 0xFF; b != 0; b = in.readByte() & 0xFF) {
+      if(b < 0x80) { sb.append((char)(b - 1)); }
+      else if(b < 0xC0) { sb.append((char)((((b & 0x3F) << 8) | (in.readByte() & 0xFF)) + ONE_BYTE_END)); }
+      else { sb.append((char)readBigEndian(in, 2)); }
+    }
+    return sb.toString();
+  }
+
+  /** Orders deserialized keys the way their ordered bytes would be: by tag, then
+   * tuples element by element and anything else by compareTo.
+   */
+  @SuppressWarnings("unchecked")
+  public static int compare(Object a, Object b) {
+    int ta = tag(a);
+    int tb = tag(b);
+    if(ta == NULL || tb == NULL) { return ta == tb ? 0 : (ta == NULL ? -1 : 1); }
+    if(ta == FALLBACK || tb == FALLBACK) { return ((Comparable<Object>)a).compareTo(b); }
+    if(ta != tb) { return ta < tb ? -1 : 1; }
+    if(ta >= TUPLE) {
+      Tuple t = TUPLES.get(a.getClass());
+      Tuple u = TUPLES.get(b.getClass());
+      for(int i = 0; i < t.arity; i++) {
+        int c = compare(t.get(a, i), u.get(b, i));
+        if(c != 0) { return c; }
+      }
+      return 0;
+    }
+    return ((Comparable<Object>)a).compareTo(b);
+  }
+
+  private static final ClassValue<Tuple> TUPLES = new ClassValue<Tuple>() {
+    protected Tuple computeValue(Class<?> cls) {
+      for(Class<?> c = cls; c != null; c = c.getSuperclass()) {
+        String name = c.getName();
+        if(name.startsWith("scala.Tuple")) {
+          try {
+            int arity = Integer.parseInt(name.substring("scala.Tuple".length()));
+            return arity >= 1 && arity <= MAX_ARITY ? new Tuple(c, arity) : null;
+          }
+          catch(NumberFormatException e) {
+            // a specialized subclass, keep looking
+          }
+        }
+      }
+      return null;
+    }
+  };
+
+  // Reads elements through scala.Product.productElement and makes tuples through the
+  // constructor, with method handles looked up once per tuple class
+  private static final class Tuple {
+    private static final MethodType GET = MethodType.methodType(Object.class, Object.class, int.class);
+    private static final MethodType MAKE = MethodType.methodType(Object.class, Object[].class);
+
+    final int arity;
+    private final MethodHandle element;
+    private final MethodHandle constructor;
+
+    Tuple(Class<?> tupleClass, int arity) {
+      this.arity = arity;
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Class<?> product = Class.forName("scala.Product", false, tupleClass.getClassLoader());
+        element = lookup.findVirtual(product, "productElement", MethodType.methodType(Object.class, int.class))
+          .asType(GET);
+        Class<?>[] params = new Class<?>[arity];
+        Arrays.fill(params, Object.class);
+        constructor = lookup.findConstructor(tupleClass, MethodType.methodType(void.class, params))
+          .asSpreader(Object[].class, arity)
+          .asType(MAKE);
+      }
+      catch(ReflectiveOperationException e) {
+        throw new IllegalStateException("Not a scala tuple: " + tupleClass, e);
+      }
+    }
+
+    Object get(Object tuple, int i) {
+      try {
+        return (Object)element.invokeExact(tuple, i);
+      }
+      catch(RuntimeException e) {
+        throw e;
+      }
+      catch(Error e) {
+        throw e;
+      }
+      catch(Throwable e) {
+        throw new KryoException(e);
+      }
+    }
+
+    Object make(Object[] values) {
+      try {
+        return (Object)constructor.invokeExact(values);
+      }
+      catch(RuntimeException e) {
+        throw e;
+      }
+      catch(Error e) {
+        throw e;
+      }
+      catch(Throwable e) {
+        throw new KryoException(e);
+      }
+    }
+  }
+}
@@ -22,9 +22,12 @@ import org.objenesis.strategy.StdInstantiatorStrategy
 
 import java.io.{ByteArrayInputStream => BAIn, ByteArrayOutputStream => BAOut}
 import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.io.DataInputBuffer
+import org.apache.hadoop.mapred.JobConf
+import org.apache.hadoop.util.ReflectionUtils
 
 import com.twitter.chill.config.ConfiguredInstantiator
-import com.twitter.chill.KryoInstantiator
+import com.twitter.chill.{KryoInstantiator, KryoPool, ScalaKryoInstantiator}
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
@@ -52,6 +55,30 @@ class HadoopTests extends AnyWordSpec with Matchers {
     res.asInstanceOf[A]
   }
 
+  def bytes(k: KryoSerialization, a: AnyRef): Array[Byte] = {
+    val out = new BAOut
+    val ks = k.getSerializer(a.getClass.asInstanceOf[Class[AnyRef]])
+    ks.open(out)
+    ks.serialize(a)
+    ks.close
+    out.toByteArray
+  }
+
+  def orderedConf(
+      keyClass: Class[_],
+      normalizedKeyBytes: Int,
+      inst: Class[_ <: KryoInstantiator] = classOf[StdKryoInstantiator]
+  ): Configuration = {
+    val conf = new JobConf
+    val hc = new HadoopConfig(conf)
+    ConfiguredInstantiator.setReflect(hc, inst)
+    KryoSerialization.setOrderedKeys(hc, normalizedKeyBytes)
+    conf.setMapOutputKeyClass(keyClass)
+    conf
+  }
+
+  def sign(i: Int): Int = Integer.signum(i)
+
   "KryoSerialization" should {
     "accept anything" in {
       val conf = new Configuration
@@ -74,5 +101,190 @@ class HadoopTests extends AnyWordSpec with Matchers {
 
       things.map(rt(ks, _)) should equal(things)
     }
+    "Keep a pool per configuration" in {
+      def conf(inst: Class[_ <: KryoInstantiator], poolSize: Option[Int]): Configuration = {
+        val c = new Configuration
+        ConfiguredInstantiator.setReflect(new HadoopConfig(c), inst)
+        poolSize.foreach(c.setInt(KryoPool.POOL_SIZE, _))
+        c
+      }
+      val std = conf(classOf[StdKryoInstantiator], None)
+      val plain = conf(classOf[KryoInstantiator], None)
+      val small = conf(classOf[StdKryoInstantiator], Some(2))
+      val pools = Seq(std, plain, small).map(new KryoSerialization(_).kryoPool)
+      pools.distinct.size should equal(3)
+      Seq(std, plain, small).map(new KryoSerialization(_).kryoPool) should equal(pools)
+
+      // Metrics and the context class loader get pools of their own
+      val metered = conf(classOf[StdKryoInstantiator], None)
+      metered.setBoolean(KryoPool.POOL_METRICS, true)
+      val meteredPool = new KryoSerialization(metered).kryoPool
+      (meteredPool should not).be(theSameInstanceAs(pools.head))
+      meteredPool.getInstrumentation should not be null
+      pools.head.getInstrumentation should be(null)
+      val thread = Thread.currentThread
+      val loader = thread.getContextClassLoader
+      thread.setContextClassLoader(new _root_.java.net.URLClassLoader(Array.empty, loader))
+      try {
+        (new KryoSerialization(std).kryoPool should not).be(theSameInstanceAs(pools.head))
+      } finally {
+        thread.setContextClassLoader(loader)
+      }
+
+      val cacheSize = KryoSerialization.getPoolCacheSize
+      KryoSerialization.setPoolCacheSize(1)
+      (new KryoSerialization(std).kryoPool should not).be(theSameInstanceAs(pools.head))
+      KryoSerialization.setPoolCacheSize(cacheSize)
+    }
+    "Deserialize many records with one deserializer, in place or through a scratch buffer" in {
+      val conf = new Configuration
+      ConfiguredInstantiator.setReflect(new HadoopConfig(conf), classOf[StdKryoInstantiator])
+      val ks = new KryoSerialization(conf)
+      val things: Seq[AnyRef] = Seq("a", "b" * 1000, "c", "d" * 10000, "e")
+
+      val out = new BAOut
+      val ser = ks.getSerializer(classOf[String].asInstanceOf[Class[AnyRef]])
+      ser.open(out)
+      things.foreach(ser.serialize(_))
+      ser.close
+      val bytes = out.toByteArray
+
+      def readAll(in: _root_.java.io.InputStream): Seq[AnyRef] = {
+        val de = ks.getDeserializer(classOf[String].asInstanceOf[Class[AnyRef]])
+        de.open(in)
+        val res = things.map(_ => de.deserialize(null))
+        de.close
+        res
+      }
+      readAll(new BAIn(bytes)) should equal(things)
+      val buf = new DataInputBuffer
+      buf.reset(bytes, bytes.length)
+      readAll(buf) should equal(things)
+
+      val batched = new BAOut
+      val batching = new KryoSerializer(ks.kryoPool, 1 << 16)
+      batching.open(batched)
+      things.foreach(batching.serialize(_))
+      batched.size should equal(0)
+      batching.close
+      batched.toByteArray should equal(bytes)
+    }
+    Seq(0, 8, 16).foreach { normalized =>
+      s"Sort ordered keys by their bytes as compareTo would ($normalized byte normalized keys)" in {
+        def check[T <: AnyRef](keys: Seq[T], order: (T, T) => Int): Unit = {
+          val conf = orderedConf(keys.head.getClass, normalized)
+          val ks = new KryoSerialization(conf)
+          val cmp = ReflectionUtils.newInstance(conf.getClass(KryoSerialization.KEY_COMPARATOR, null), conf)
+            .asInstanceOf[KryoRawComparator]
+          val raw = keys.map(bytes(ks, _))
+          // equals, as == on boxed NaN is false
+          keys.foreach(k => rt(ks, k).equals(k) should be(true))
+          for {
+            (a, ra) <- keys.zip(raw)
+            (b, rb) <- keys.zip(raw)
+          } {
+            sign(cmp.compare(ra, 0, ra.length, rb, 0, rb.length)) should equal(sign(order(a, b)))
+            sign(cmp.compare(a, b)) should equal(sign(order(a, b)))
+          }
+        }
+        val ints = Seq(0, 1, -1, 127, 128, -129, Int.MaxValue, Int.MinValue).map(Int.box)
+        check[Integer](ints, _.compareTo(_))
+        val longs = Seq(0L, 3L, -3L, Long.MaxValue, Long.MinValue).map(Long.box)
+        check[java.lang.Long](longs, _.compareTo(_))
+        val doubles = Seq(0.0, -0.0, 1.5, -1.5, Double.NaN, Double.MaxValue, Double.MinPositiveValue,
+          Double.NegativeInfinity, Double.PositiveInfinity).map(Double.box)
+        check[java.lang.Double](doubles, _.compareTo(_))
+        val floats = Seq(0.0f, -0.0f, 2.5f, -2.5f, Float.NaN, Float.NegativeInfinity).map(Float.box)
+        check[java.lang.Float](floats, _.compareTo(_))
+        val shorts = Seq[Short](0, -5, 5, Short.MinValue, Short.MaxValue).map(Short.box)
+        check[java.lang.Short](shorts, _.compareTo(_))
+        check[java.lang.Byte](Seq[Byte](0, -5, 5, Byte.MinValue, Byte.MaxValue).map(Byte.box), _.compareTo(_))
+        check[Character](Seq('a', 'Z', '\u0000', '\uffff').map(Char.box), _.compareTo(_))
+        check[java.lang.Boolean](Seq(true, false).map(Boolean.box), _.compareTo(_))
+        val strings = Seq("", "a", "ab", "b", "\u0000", "\u007e", "\u007f", "\u00ff", "\u407e", "\u407f",
+          "\ue000", "\ud83d\ude00", "a\u0000b")
+        check[String](strings, _.compareTo(_))
+
+        val tuples = for { i <- Seq(-1, 0, 2); s <- Seq("", "x", "xy") } yield (i, s)
+        check[(Int, String)](tuples, Ordering[(Int, String)].compare)
+        // scala specializes these
+        check[(Int, Long)](Seq((1, 2L), (1, -2L), (-1, 5L)), Ordering[(Int, Long)].compare)
+        val nested = Seq((1L, (2.0, "a")), (1L, (2.0, "b")), (1L, (-2.0, "z")), (-1L, (0.0, "")))
+        check[(Long, (Double, String))](nested, Ordering[(Long, (Double, String))].compare)
+      }
+      s"Fall back to deserializing keys holding other types ($normalized byte normalized keys)" in {
+        val keys = Seq((1, new java.util.Date(5L)), (1, new java.util.Date(3L)), (0, new java.util.Date(9L)))
+        val conf = orderedConf(classOf[Tuple2[_, _]], normalized)
+        val ks = new KryoSerialization(conf)
+        val cmp = new KryoRawComparator(conf)
+        val raw = keys.map(bytes(ks, _))
+        val plain = new KryoSerialization(orderedConf(classOf[Tuple2[_, _]], 0))
+        raw.head.length should equal(bytes(plain, keys.head).length + normalized)
+        keys.foreach(k => rt(ks, k) should equal(k))
+        for {
+          (a, ra) <- keys.zip(raw)
+          (b, rb) <- keys.zip(raw)
+        } {
+          sign(cmp.compare(ra, 0, ra.length, rb, 0, rb.length)) should equal(
+            sign(Ordering.by[(Int, java.util.Date), (Int, Long)](t => (t._1, t._2.getTime)).compare(a, b)))
+        }
+      }
+      s"Sort fallback keys with references on ($normalized byte normalized keys)" in {
+        def check[T <: Comparable[T]](keys: Seq[(Int, T)]): Unit = {
+          // KryoInstantiator leaves Kryo's references on
+          val conf = orderedConf(classOf[Tuple2[_, _]], normalized, classOf[KryoInstantiator])
+          val ks = new KryoSerialization(conf)
+          val cmp = new KryoRawComparator(conf)
+          val raw = keys.map(bytes(ks, _))
+          keys.foreach(k => rt(ks, k) should equal(k))
+          def order(a: (Int, T), b: (Int, T)): Int =
+            if (a._1 != b._1) a._1.compare(b._1) else a._2.compareTo(b._2)
+          for {
+            (a, ra) <- keys.zip(raw)
+            (b, rb) <- keys.zip(raw)
+          } {
+            sign(cmp.compare(ra, 0, ra.length, rb, 0, rb.length)) should equal(sign(order(a, b)))
+            sign(cmp.compare(a, b)) should equal(sign(order(a, b)))
+          }
+        }
+        check(Seq(-5L, 3L, 300L, -70000L, 1L << 40).map(t => (1, new java.util.Date(t))))
+        val bigs = Seq("-1", "5", "300", "-123456789012345678901234567890")
+        check(bigs.map(v => (0, new java.math.BigInteger(v))))
+      }
+    }
+    "Sort keys written by ScalaKryoInstantiator, which tracks references, by their normalized keys" in {
+      val keys = Seq((2, "b"), (2, "a"), (-1, "zz"), (300, ""))
+      val dated = Seq((1, -5L), (1, 70000L), (0, 3L)).map { case (i, t) => (i, new java.util.Date(t)) }
+      Seq(8, 16).foreach { normalized =>
+        val inst = classOf[ScalaKryoInstantiator]
+        val conf = orderedConf(classOf[Tuple2[_, _]], normalized, inst)
+        val ks = new KryoSerialization(conf)
+        val cmp = new KryoRawComparator(conf)
+        val plain = new KryoSerialization(orderedConf(classOf[Tuple2[_, _]], 0, inst))
+        def check[T <: Product with AnyRef](ts: Seq[T], order: (T, T) => Int): Unit = {
+          val raw = ts.map(bytes(ks, _))
+          ts.zip(raw).foreach { case (t, r) =>
+            rt(ks, t) should equal(t)
+            // The normalized key follows the length, with no reference marker before it
+            r.length should equal(bytes(plain, t).length + normalized)
+          }
+          for {
+            (a, ra) <- ts.zip(raw)
+            (b, rb) <- ts.zip(raw)
+          } {
+            sign(cmp.compare(ra, 0, ra.length, rb, 0, rb.length)) should equal(sign(order(a, b)))
+          }
+        }
+        check[(Int, String)](keys, Ordering[(Int, String)].compare)
+        val byTime = Ordering.by[(Int, java.util.Date), (Int, Long)](t => (t._1, t._2.getTime))
+        check[(Int, java.util.Date)](dated, byTime.compare)
+      }
+    }
+    "Compare deserialized fallback values by compareTo" in {
+      OrderedSerializer.compare(new java.util.Date(5L), new java.util.Date(3L)) should be > 0
+      OrderedSerializer.compare(new java.util.Date(-5L), new java.util.Date(3L)) should be < 0
+      OrderedSerializer.compare((1, new java.util.Date(3L)), (1, new java.util.Date(3L))) should equal(0)
+      OrderedSerializer.compare(null, new java.util.Date(3L)) should be < 0
+    }
   }
 }
@@ -0,0 +1,159 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.ReferenceResolver;
+import com.esotericsoftware.kryo.util.IdentityObjectIntMap;
+import com.esotericsoftware.kryo.util.Util;
+
+import java.util.Arrays;
+
+/** A ReferenceResolver that keeps written objects in an open addressing identity
+ * table of plain arrays, and resets by clearing only the slots it used.
+ *
+ * With no tracked classes it references the same objects as Kryo's
+ * MapReferenceResolver (everything but primitive wrappers) and writes the same
+ * bytes. Given tracked classes, only instances of those classes (and their
+ * subclasses) are referenced, which saves the bookkeeping for everything else;
+ * data written that way must be read with the same tracked classes.
+ * Like any ReferenceResolver it belongs to one Kryo, and is not thread-safe.
+ */
+public class IdentityReferenceResolver implements ReferenceResolver {
+  private static final int INITIAL_CAPACITY = 256;
+  // Tables grown past this are dropped on reset, so one huge graph does not pin memory
+  private static final int RETAINED_CAPACITY = 1 << 16;
+
+  private final Class<?>[] tracked;
+  private final IdentityObjectIntMap<Class<?>> trackedCache;
+
+  private Object[] keys = new Object[INITIAL_CAPACITY];
+  private int[] ids = new int[INITIAL_CAPACITY];
+  // slotOf[id] is where the object with that id sits in keys
+  private int[] slotOf = new int[INITIAL_CAPACITY / 2];
+  private int written;
+
+  private Object[] readObjects = new Object[INITIAL_CAPACITY / 2];
+  private int read;
+
+  /** Reference every object except primitive wrappers */
+  public IdentityReferenceResolver() {
+    this(new Class<?>[0]);
+  }
+
+  /** Reference only instances of the given classes, or everything but primitive wrappers if none are given */
+  public IdentityReferenceResolver(Class<?>... tracked) {
+    this.tracked = tracked.clone();
+    this.trackedCache = tracked.length == 0 ? null : new IdentityObjectIntMap<Class<?>>();
+  }
+
+  public void setKryo(Kryo kryo) { }
+
+  public int addWrittenObject(Object object) {
+    if(2 * (written + 1) > keys.length) { grow(); }
+    int id = written++;
+    int slot = insertSlot(object, keys);
+    keys[slot] = object;
+    ids[slot] = id;
+    if(id == slotOf.length) { slotOf = Arrays.copyOf(slotOf, 2 * id); }
+    slotOf[id] = slot;
+    return id;
+  }
+
+  public int getWrittenId(Object object) {
+    int mask = keys.length - 1;
+    for(int slot = hash(object) & mask; ; slot = (slot + 1) & mask) {
+      Object k = keys[slot];
+      if(k == object) { return ids[slot]; }
+      if(k == null) { return -1; }
+    }
+  }
+
+  @SuppressWarnings("rawtypes") // ReferenceResolver takes a raw Class
+  public int nextReadId(Class type) {
+    if(read == readObjects.length) { readObjects = Arrays.copyOf(readObjects, 2 * read); }
+    readObjects[read] = null;
+    return read++;
+  }
+
+  public void setReadObject(int id, Object object) {
+    readObjects[id] = object;
+  }
+
+  @SuppressWarnings("rawtypes")
+  public Object getReadObject(Class type, int id) {
+    return readObjects[id];
+  }
+
+  public void reset() {
+    if(keys.length > RETAINED_CAPACITY) {
+      keys = new Object[INITIAL_CAPACITY];
+      ids = new int[INITIAL_CAPACITY];
+      slotOf = new int[INITIAL_CAPACITY / 2];
+    }
+    else {
+      for(int i = 0; i < written; i++) { keys[slotOf[i]] = null; }
+    }
+    written = 0;
+    if(readObjects.length > RETAINED_CAPACITY) { readObjects = new Object[INITIAL_CAPACITY / 2]; }
+    else { Arrays.fill(readObjects, 0, read, null); }
+    read = 0;
+  }
+
+  @SuppressWarnings("rawtypes")
+  public boolean useReferences(Class type) {
+    if(trackedCache == null) { return !Util.isWrapperClass(type); }
+    int use = trackedCache.get(type, -1);
+    if(use == -1) {
+      use = 0;
+      for(Class<?> t : tracked) {
+        if(t.isAssignableFrom(type)) { use = 1; break; }
+      }
+      trackedCache.put(type, use);
+    }
+    return use == 1;
+  }
+
+  private void grow() {
+    Object[] oldKeys = keys;
+    int[] oldIds = ids;
+    keys = new Object[2 * oldKeys.length];
+    ids = new int[keys.length];
+    for(int i = 0; i < oldKeys.length; i++) {
+      Object k = oldKeys[i];
+      if(k != null) {
+        int slot = insertSlot(k, keys);
+        keys[slot] = k;
+        ids[slot] = oldIds[i];
+        slotOf[oldIds[i]] = slot;
+      }
+    }
+  }
+
+  private static int insertSlot(Object object, Object[] table) {
+    int mask = table.length - 1;
+    int slot = hash(object) & mask;
+    while(table[slot] != null) { slot = (slot + 1) & mask; }
+    return slot;
+  }
+
+  // Fibonacci hashing spreads the identity hash codes, which are often close together
+  private static int hash(Object object) {
+    int h = System.identityHashCode(object) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
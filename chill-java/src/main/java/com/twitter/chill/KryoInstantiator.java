@@ -69,6 +69,21 @@ public class KryoInstantiator implements Serializable {
     };
   }
 
+  /** Turns references on, tracked by an IdentityReferenceResolver, which is cheaper
+   * than Kryo's MapReferenceResolver. With no classes given the bytes are the same
+   * as with setReferences(true); otherwise only instances of the given classes are
+   * referenced, and the data must be read with the same classes.
+   */
+  public KryoInstantiator withIdentityReferences(final Class<?>... tracked) {
+    return new KryoInstantiator() {
+      public Kryo newKryo() {
+        Kryo k = KryoInstantiator.this.newKryo();
+        k.setReferenceResolver(new IdentityReferenceResolver(tracked));
+        return k;
+      }
+    };
+  }
+
   /** If true, Kryo will error if it sees a class that has not been registered
    */
   public KryoInstantiator setRegistrationRequired(final boolean req) {
@@ -104,4 +119,11 @@ public class KryoInstantiator implements Serializable {
       }
     };
   }
+
+  /** Like withRegistrar, but r only runs once, on a template that later
+   * Kryo instances are copied from. See TemplateKryoInstantiator.
+   */
+  public KryoInstantiator withRegistrationTemplate(IKryoRegistrar r) {
+    return new TemplateKryoInstantiator(this, r);
+  }
 }
@@ -17,22 +17,162 @@ limitations under the License.
 package com.twitter.chill;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import com.esotericsoftware.kryo.util.UnsafeUtil;
 
 import java.io.OutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /** Simple ResourcePool to save on Kryo instances, which
  * are expensive to allocate
  */
 abstract public class KryoPool extends ResourcePool<SerDeState> {
 
+  /** Config key, and system property, to override defaultPoolSize() */
+  public static final String POOL_SIZE = "com.twitter.chill.poolsize";
+
+  /** Config key: if true, integrations record their pool in PoolStats.named */
+  public static final String POOL_METRICS = "com.twitter.chill.poolmetrics";
+
+  /** Since each thread only needs 1 Kryo, the pool doesn't need more
+   * space than the number of threads. Unless the POOL_SIZE system property
+   * is set, we guess that there are 4 hyperthreads / core and then multiply
+   * by the number of cores.
+   */
+  public static int defaultPoolSize() {
+    int guess = 4 * Runtime.getRuntime().availableProcessors();
+    return Integer.getInteger(POOL_SIZE, guess);
+  }
+
   protected KryoPool(int poolSize) { super(poolSize); }
 
+  protected KryoPool(ResourceStore<SerDeState> store) { super(store); }
+
+  protected KryoPool(ResourceStore<SerDeState> store, int maxBorrowed) { super(store, maxBorrowed); }
+
+  /** Config key: how many instances integrations should prewarm at startup */
+  public static final String PREWARM = "com.twitter.chill.prewarm";
+
+  /** Same as prewarm(count, samples) without samples */
+  public int prewarm(int count) {
+    return prewarm(count, Collections.emptyList());
+  }
+
+  /** Same as prewarm(count, samples, fj) on the common ForkJoinPool */
+  public int prewarm(int count, Iterable<?> samples) {
+    return prewarm(count, samples, ForkJoinPool.commonPool());
+  }
+
+  /** Build count SerDeStates in parallel on fj and keep them idle in the pool, so the
+   * first borrows do not pay for KryoInstantiator.newKryo. Each new state round trips
+   * every sample, with its class, so their serializers are resolved and start JIT
+   * compiling before real traffic; samples are read from several threads at once.
+   * The tasks run with the caller's context class loader, which Kryo resolves
+   * classes with, rather than whatever loader the fj worker happens to have.
+   * This blocks until all are built.
+   * @return how many states the pool kept, at most its idle capacity
+   */
+  public int prewarm(int count, final Iterable<?> samples, ForkJoinPool fj) {
+    final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    List<Callable<SerDeState>> tasks = new ArrayList<Callable<SerDeState>>(count);
+    for(int i = 0; i < count; i++) {
+      tasks.add(new Callable<SerDeState>() {
+        public SerDeState call() {
+          Thread thread = Thread.currentThread();
+          ClassLoader prev = thread.getContextClassLoader();
+          thread.setContextClassLoader(loader);
+          try {
+            SerDeState st = newInstance();
+            for(Object sample : samples) {
+              st.writeClassAndObject(sample);
+              st.setInput(st.outputToBytes());
+              st.readClassAndObject();
+              st.clear();
+            }
+            return st;
+          }
+          finally {
+            thread.setContextClassLoader(prev);
+          }
+        }
+      });
+    }
+    int kept = 0;
+    for(Future<SerDeState> built : fj.invokeAll(tasks)) {
+      try {
+        if(addIdle(built.get())) { kept++; }
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      catch(ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    return kept;
+  }
+
+  /** Config key, and system property, giving the default for setOutputRetention */
+  public static final String OUTPUT_RETENTION = "com.twitter.chill.outputretention";
+
+  private volatile int outputRetention = Integer.getInteger(OUTPUT_RETENTION, 0);
+
+  /** Let released states shrink their output back toward workingSize bytes
+   * after serializing outliers, see SerDeState.setOutputRetention.
+   * 0 keeps every buffer at the largest size it has grown to.
+   */
+  public void setOutputRetention(int workingSize) { outputRetention = workingSize; }
+
+  public int getOutputRetention() { return outputRetention; }
+
+  private volatile SizePredictor sizePredictor;
+
+  /** Have borrowed states record how large each class serializes, and size their
+   * output up front for the class they are about to write, see SerDeState.setSizePredictor.
+   * Pools made by withBuffer, withUnsafeBuffer and withByteBuffers use the prediction,
+   * any pool records it. null, the default, turns it off.
+   */
+  public void setSizePredictor(SizePredictor p) { sizePredictor = p; }
+
+  /** The current estimates, or null if none are kept */
+  public SizePredictor getSizePredictor() { return sizePredictor; }
+
+  @Override
+  public SerDeState borrow() {
+    SerDeState st = super.borrow();
+    st.setSizePredictor(sizePredictor);
+    return st;
+  }
+
+  @Override
+  public SerDeState borrow(long timeout, TimeUnit unit) throws InterruptedException {
+    SerDeState st = super.borrow(timeout, unit);
+    if(st != null) { st.setSizePredictor(sizePredictor); }
+    return st;
+  }
+
   @Override
   public void release(SerDeState st) {
+    PoolInstrumentation inst = getInstrumentation();
+    if(inst != null) { inst.outputSize(st.numOfWrittenBytes()); }
+    st.setOutputRetention(outputRetention);
     st.clear();
     super.release(st);
   }
@@ -42,48 +182,338 @@ abstract public class KryoPool extends ResourcePool<SerDeState> {
       final KryoInstantiator ki,
       final int outBufferMin,
       final int outBufferMax) {
-    return new KryoPool(poolSize) {
+    return withBuffer(ResourcePool.<SerDeState>queueStore(poolSize), ki, outBufferMin, outBufferMax);
+  }
+
+  /** Same as withBuffer, but idle instances are kept in the given store.
+   * Pass a ThreadAffineStore when many threads share the pool.
+   */
+  public static KryoPool withBuffer(ResourceStore<SerDeState> store,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return new KryoPool(store) {
+      protected SerDeState newInstance() {
+        return bufferState(ki, outBufferMin, outBufferMax);
+      }
+    };
+  }
+
+  /** Same as withBuffer, but never more than maxInstances are alive.
+   * Once they are all borrowed, borrow() waits for a release (see borrow(long, TimeUnit)).
+   */
+  public static KryoPool boundedWithBuffer(int maxInstances,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return new KryoPool(ResourcePool.<SerDeState>queueStore(maxInstances), maxInstances) {
       protected SerDeState newInstance() {
-        return new SerDeState(ki.newKryo(), new Input(), new Output(outBufferMin, outBufferMax));
+        return bufferState(ki, outBufferMin, outBufferMax);
       }
     };
   }
 
-  /** Output is created with new Output(new ByteArrayOutputStream())
-   * This will automatically resize internally
+  /** A withBuffer pool whose outputs start at 64 bytes, are sized for each object
+   * from a SizePredictor before it is written, and shrink back after outliers
+   * (output retention of 64 bytes). This suits a mix of message sizes better than
+   * any one initial buffer size.
+   */
+  public static KryoPool withAdaptiveBuffer(int poolSize, KryoInstantiator ki, int outBufferMax) {
+    KryoPool pool = withBuffer(poolSize, ki, ADAPTIVE_MIN, outBufferMax);
+    pool.setSizePredictor(new SizePredictor());
+    pool.setOutputRetention(ADAPTIVE_MIN);
+    return pool;
+  }
+
+  private static final int ADAPTIVE_MIN = 64;
+
+  private static final boolean UNSAFE_AVAILABLE = checkUnsafe();
+
+  private static boolean checkUnsafe() {
+    try {
+      return UnsafeUtil.unsafe() != null;
+    }
+    catch(Throwable t) {
+      // UnsafeUtil fails to initialize on some JVMs
+      return false;
+    }
+  }
+
+  /** True if Kryo's unsafe streams can be used in this JVM, see withUnsafeBuffer */
+  public static boolean unsafeAvailable() { return UNSAFE_AVAILABLE; }
+
+  /** Same as withBuffer, but on Kryo's UnsafeInput and UnsafeOutput, which copy
+   * primitives and primitive arrays with sun.misc.Unsafe. These are much faster
+   * for numeric payloads, but write fixed-width numbers in native byte order, so
+   * their bytes can only be read by a pool that also uses them.
+   * If unsafeAvailable() is false this is exactly withBuffer.
+   */
+  public static KryoPool withUnsafeBuffer(int poolSize,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return withUnsafeBuffer(ResourcePool.<SerDeState>queueStore(poolSize), ki, outBufferMin, outBufferMax);
+  }
+
+  /** Same as withUnsafeBuffer, but idle instances are kept in the given store.
+   */
+  public static KryoPool withUnsafeBuffer(ResourceStore<SerDeState> store,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return new KryoPool(store) {
+      protected SerDeState newInstance() {
+        return unsafeBufferState(ki, outBufferMin, outBufferMax);
+      }
+    };
+  }
+
+  /** Output is created with new Output(4096, -1), a plain array that grows as
+   * needed with no max. Unlike the java.io.ByteArrayOutputStream this was once
+   * built on, writes are not synchronized, writeOutputTo is a single write and
+   * outputToBytes a single exact copy.
    */
   public static KryoPool withByteArrayOutputStream(int poolSize,
       final KryoInstantiator ki) {
-    return new KryoPool(poolSize) {
+    return withByteArrayOutputStream(ResourcePool.<SerDeState>queueStore(poolSize), ki);
+  }
+
+  /** Same as withByteArrayOutputStream, but idle instances are kept in the given store.
+   * Pass a ThreadAffineStore when many threads share the pool.
+   */
+  public static KryoPool withByteArrayOutputStream(ResourceStore<SerDeState> store,
+      final KryoInstantiator ki) {
+    return new KryoPool(store) {
       protected SerDeState newInstance() {
-        return new SerDeState(ki.newKryo(), new Input(), new Output(new ByteArrayOutputStream())) {
-          /*
-           * We have to take extra care of the ByteArrayOutputStream
-           */
-          @Override
-          public void clear() {
-            super.clear();
-            ByteArrayOutputStream byteStream = (ByteArrayOutputStream)output.getOutputStream();
-            byteStream.reset();
-          }
-          @Override
-          public byte[] outputToBytes() {
-            output.flush();
-            ByteArrayOutputStream byteStream = (ByteArrayOutputStream)output.getOutputStream();
-            return byteStream.toByteArray();
-          }
-          @Override
-          public void writeOutputTo(OutputStream os) throws IOException {
-            output.flush();
-            ByteArrayOutputStream byteStream = (ByteArrayOutputStream)output.getOutputStream();
-            byteStream.writeTo(os);
-          }
-        };
+        return growableBufferState(ki);
+      }
+    };
+  }
+
+  /** Same as withByteArrayOutputStream, but never more than maxInstances are alive.
+   * Once they are all borrowed, borrow() waits for a release (see borrow(long, TimeUnit)).
+   */
+  public static KryoPool boundedWithByteArrayOutputStream(int maxInstances,
+      final KryoInstantiator ki) {
+    return new KryoPool(ResourcePool.<SerDeState>queueStore(maxInstances), maxInstances) {
+      protected SerDeState newInstance() {
+        return growableBufferState(ki);
+      }
+    };
+  }
+
+  /** Input and output are Kryo's ByteBufferInput and ByteBufferOutput, the latter
+   * starting with a direct buffer of outBufferMin bytes that may grow to outBufferMax.
+   * Use this for NIO code: toByteBuffer* writes straight into the caller's buffer and
+   * fromByteBuffer reads direct buffers in place.
+   */
+  public static KryoPool withByteBuffers(int poolSize,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return withByteBuffers(ResourcePool.<SerDeState>queueStore(poolSize), ki, outBufferMin, outBufferMax);
+  }
+
+  /** Same as withByteBuffers, but idle instances are kept in the given store.
+   */
+  public static KryoPool withByteBuffers(ResourceStore<SerDeState> store,
+      final KryoInstantiator ki,
+      final int outBufferMin,
+      final int outBufferMax) {
+    return new KryoPool(store) {
+      protected SerDeState newInstance() {
+        return byteBufferState(ki, outBufferMin, outBufferMax);
+      }
+    };
+  }
+
+  static SerDeState bufferState(KryoInstantiator ki, int outBufferMin, int outBufferMax) {
+    return bufferState(ki.newKryo(), new Input(), new Output(outBufferMin, outBufferMax),
+        outBufferMin, outBufferMax);
+  }
+
+  static SerDeState unsafeBufferState(KryoInstantiator ki, int outBufferMin, int outBufferMax) {
+    if(!unsafeAvailable()) { return bufferState(ki, outBufferMin, outBufferMax); }
+    return bufferState(ki.newKryo(), new UnsafeInput(), new UnsafeOutput(outBufferMin, outBufferMax),
+        outBufferMin, outBufferMax);
+  }
+
+  private static SerDeState bufferState(Kryo k, Input in, Output out,
+      final int outBufferMin, final int outBufferMax) {
+    return new SerDeState(k, in, out) {
+      @Override
+      protected boolean shrinkOutput(int size) {
+        output.setBuffer(new byte[Math.max(size, outBufferMin)], outBufferMax);
+        return true;
+      }
+      @Override
+      protected void presizeOutput(int size) {
+        int capacity = capped(size, outBufferMax);
+        if(capacity > output.getBuffer().length) { output.setBuffer(new byte[capacity], outBufferMax); }
       }
     };
   }
 
+  private static int capped(int size, int max) {
+    return max < 0 ? size : Math.min(size, max);
+  }
+
+  // Where the output of withByteArrayOutputStream pools starts, it grows without a max
+  static final int GROWABLE_OUTPUT_SIZE = 1 << 12;
+
+  static SerDeState growableBufferState(KryoInstantiator ki) {
+    return bufferState(ki, GROWABLE_OUTPUT_SIZE, -1);
+  }
+
+  static SerDeState byteBufferState(KryoInstantiator ki, final int outBufferMin, final int outBufferMax) {
+    return new SerDeState(ki.newKryo(), new ByteBufferInput(), new ByteBufferOutput(outBufferMin, outBufferMax)) {
+      // ByteBufferInput.setBuffer(byte[]) would copy into a new direct buffer
+      @Override
+      public void setInput(byte[] in) { setInput(in, 0, in.length); }
+      @Override
+      public void setInput(byte[] in, int offset, int count) {
+        ((ByteBufferInput)input).setBuffer(ByteBuffer.wrap(in, offset, count));
+      }
+      @Override
+      public int writeObject(Object o, ByteBuffer buf) {
+        ByteBufferOutput out = redirect(buf);
+        try {
+          kryo.writeObject(out, o);
+          return advance(buf, out);
+        }
+        finally {
+          restore(out);
+        }
+      }
+      @Override
+      public int writeClassAndObject(Object o, ByteBuffer buf) {
+        ByteBufferOutput out = redirect(buf);
+        try {
+          kryo.writeClassAndObject(out, o);
+          return advance(buf, out);
+        }
+        finally {
+          restore(out);
+        }
+      }
+      // The output's own buffer while it is pointed at a caller's
+      private ByteBuffer own;
+      // Point the output at the rest of buf, with no room to grow
+      private ByteBufferOutput redirect(ByteBuffer buf) {
+        ByteBufferOutput out = (ByteBufferOutput)output;
+        own = out.getByteBuffer();
+        ByteBuffer target = buf.slice();
+        out.setBuffer(target, target.capacity());
+        return out;
+      }
+      private int advance(ByteBuffer buf, ByteBufferOutput out) {
+        int size = out.position();
+        buf.position(buf.position() + size);
+        return size;
+      }
+      private void restore(ByteBufferOutput out) {
+        out.setBuffer(own, outBufferMax);
+        out.clear();
+        own = null;
+      }
+      @Override
+      protected boolean shrinkOutput(int size) {
+        ((ByteBufferOutput)output).setBuffer(ByteBuffer.allocateDirect(Math.max(size, outBufferMin)), outBufferMax);
+        return true;
+      }
+      @Override
+      protected void presizeOutput(int size) {
+        int capacity = capped(size, outBufferMax);
+        ByteBufferOutput out = (ByteBufferOutput)output;
+        if(capacity > out.getByteBuffer().capacity()) {
+          out.setBuffer(ByteBuffer.allocateDirect(capacity), outBufferMax);
+        }
+      }
+      @Override
+      protected void moveOutput(int from, int to, int length) {
+        ByteBuffer bytes = ((ByteBufferOutput)output).getByteBuffer();
+        ByteBuffer src = bytes.duplicate();
+        src.limit(from + length);
+        src.position(from);
+        ByteBuffer dst = bytes.duplicate();
+        dst.position(to);
+        dst.put(src);
+      }
+      @Override
+      public void writeOutputTo(OutputStream os) throws IOException {
+        os.write(output.toBytes());
+      }
+      @Override
+      public int writeOutputTo(ByteBuffer buf) {
+        int size = output.position();
+        checkRoom(buf, size);
+        ByteBuffer written = ((ByteBufferOutput)output).getByteBuffer().duplicate();
+        written.flip();
+        buf.put(written);
+        return size;
+      }
+      @Override
+      public int writeOutputTo(byte[] buf, int offset) {
+        int size = output.position();
+        if(size > buf.length - offset) { return -1; }
+        ByteBuffer written = ((ByteBufferOutput)output).getByteBuffer();
+        written.position(0);
+        written.get(buf, offset, size);
+        return size;
+      }
+    };
+  }
+
+  // Set once Kryo.copy of an instance hit a serializer that cannot copy
+  private static final class CopySupport {
+    volatile boolean unsupported;
+  }
+
+  private final ClassValue<CopySupport> copySupport = new ClassValue<CopySupport>() {
+    protected CopySupport computeValue(Class<?> cls) { return new CopySupport(); }
+  };
+
+  private static final String COPY_UNSUPPORTED = "Serializer does not support copy";
+
+  /** Copy obj with Kryo.copy, which shares whatever the serializers consider
+   * immutable. If some serializer cannot copy, this falls back to a
+   * serialize/deserialize round trip, and remembers to go straight to the
+   * round trip for obj's class from then on. Any other copy failure is thrown.
+   *
+   * This does not always keep sharing the way the round trip does. A collection
+   * whose serializer copies it through a builder, such as a mutable scala
+   * collection, is copied once for every reference to it in obj. So two
+   * references to one ArrayBuffer come back as two separate buffers, where the
+   * round trip gave back one. Use roundTripCopy where that identity matters.
+   */
   public <T> T deepCopy(T obj) {
+    if(obj == null) { return null; }
+    CopySupport support = copySupport.get(obj.getClass());
+    if(support.unsupported) { return roundTripCopy(obj); }
+    SerDeState serde = borrow();
+    try {
+      return serde.copy(obj);
+    }
+    catch(KryoException e) {
+      if(!isCopyUnsupported(e)) { throw e; }
+      support.unsupported = true;
+    }
+    finally {
+      release(serde);
+    }
+    return roundTripCopy(obj);
+  }
+
+  private static boolean isCopyUnsupported(Throwable t) {
+    for(; t != null; t = t.getCause()) {
+      String msg = t.getMessage();
+      if(t instanceof KryoException && msg != null && msg.startsWith(COPY_UNSUPPORTED)) { return true; }
+    }
+    return false;
+  }
+
+  /** The copy deepCopy used to make: serialize obj and read it back */
+  public <T> T roundTripCopy(T obj) {
     return (T)fromBytes(toBytesWithoutClass(obj), obj.getClass());
   }
 
@@ -109,6 +539,28 @@ abstract public class KryoPool extends ResourcePool<SerDeState> {
     }
   }
 
+  /** Deserialize an object, written with its class, from bytes[offset until offset + length] */
+  public Object fromBytes(byte[] bytes, int offset, int length) {
+    SerDeState serde = borrow();
+    try {
+      serde.setInput(bytes, offset, length);
+      return serde.readClassAndObject();
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  public <T> T fromBytes(byte[] bytes, int offset, int length, Class<T> cls) {
+    SerDeState serde = borrow();
+    try {
+      serde.setInput(bytes, offset, length);
+      return serde.readObject(cls);
+    }
+    finally {
+      release(serde);
+    }
+  }
 
   public byte[] toBytesWithClass(Object obj) {
     SerDeState serde = borrow();
@@ -132,6 +584,153 @@ abstract public class KryoPool extends ResourcePool<SerDeState> {
     }
   }
 
+  /** Serialize obj with its class into buf starting at offset, without allocating.
+   * @return the number of bytes written, or -1, writing nothing, if they do not fit
+   */
+  public int toBytesWithClass(Object obj, byte[] buf, int offset) {
+    SerDeState serde = borrow();
+    try {
+      serde.writeClassAndObject(obj);
+      return serde.writeOutputTo(buf, offset);
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  public int toBytesWithoutClass(Object obj, byte[] buf, int offset) {
+    SerDeState serde = borrow();
+    try {
+      serde.writeObject(obj);
+      return serde.writeOutputTo(buf, offset);
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  /** Deserialize an object, written with its class, from buf's remaining bytes
+   * without copying them, and advance buf's position past it.
+   */
+  public Object fromByteBuffer(ByteBuffer buf) {
+    SerDeState serde = borrow();
+    try {
+      serde.setInput(buf);
+      Object result = serde.readClassAndObject();
+      buf.position(buf.limit() - serde.numOfUnreadBytes());
+      return result;
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  public <T> T fromByteBuffer(ByteBuffer buf, Class<T> cls) {
+    SerDeState serde = borrow();
+    try {
+      serde.setInput(buf);
+      T result = serde.readObject(cls);
+      buf.position(buf.limit() - serde.numOfUnreadBytes());
+      return result;
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  /** Serialize obj with its class into buf at its position, and advance the position past it.
+   * @return the number of bytes written
+   * @throws com.esotericsoftware.kryo.KryoException if buf has too little room left,
+   * in which case its position is unchanged
+   */
+  public int toByteBufferWithClass(Object obj, ByteBuffer buf) {
+    SerDeState serde = borrow();
+    try {
+      return serde.writeClassAndObject(obj, buf);
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  public int toByteBufferWithoutClass(Object obj, ByteBuffer buf) {
+    SerDeState serde = borrow();
+    try {
+      return serde.writeObject(obj, buf);
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  /** Serialize each object with its class, back to back, under a single borrow.
+   */
+  public SerializedBatch toBatchWithClass(Iterable<?> objs) {
+    SerDeState serde = borrow();
+    try {
+      int[] ends = new int[16];
+      int count = 0;
+      for(Object obj : objs) {
+        serde.writeClassAndObject(obj);
+        if(count == ends.length) { ends = Arrays.copyOf(ends, 2 * count); }
+        ends[count++] = serde.numOfWrittenBytes();
+      }
+      return new SerializedBatch(serde.outputToBytes(), Arrays.copyOf(ends, count));
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  public SerializedBatch toBatchWithClass(Object[] objs) {
+    return toBatchWithClass(Arrays.asList(objs));
+  }
+
+  /** Serialize objs with their classes, back to back, into buf starting at offset,
+   * without allocating. The i-th object ends at buf[ends[i]].
+   * @return the number of bytes written, or -1 if buf or ends is too small
+   */
+  public int toBatchWithClass(Object[] objs, byte[] buf, int offset, int[] ends) {
+    if(objs.length > ends.length) { return -1; }
+    SerDeState serde = borrow();
+    try {
+      int room = buf.length - offset;
+      for(int i = 0; i < objs.length; i++) {
+        serde.writeClassAndObject(objs[i]);
+        int written = serde.numOfWrittenBytes();
+        if(written > room) { return -1; }
+        ends[i] = offset + written;
+      }
+      return serde.writeOutputTo(buf, offset);
+    }
+    finally {
+      release(serde);
+    }
+  }
+
+  /** Deserialize every object in the batch under a single borrow */
+  public List<Object> fromBatch(SerializedBatch batch) {
+    return fromBatch(batch.getBytes(), 0, batch.getLength());
+  }
+
+  /** Deserialize objects written with their classes, back to back, in
+   * bytes[offset until offset + length], under a single borrow.
+   */
+  public List<Object> fromBatch(byte[] bytes, int offset, int length) {
+    SerDeState serde = borrow();
+    try {
+      serde.setInput(bytes, offset, length);
+      List<Object> result = new ArrayList<Object>();
+      while(serde.numOfUnreadBytes() > 0) {
+        result.add(serde.readClassAndObject());
+      }
+      return result;
+    }
+    finally {
+      release(serde);
+    }
+  }
+
   public boolean hasRegistration(Class obj) {
     SerDeState serde = borrow();
     try {
@@ -0,0 +1,119 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Lazily reads the records written by a KryoRecordWriter.
+ *
+ * The stream is read ahead in chunks of bufferSize bytes, and each record is
+ * deserialized by one SerDeState borrowed from the pool when the reader is made.
+ * The state goes back to the pool once the stream is exhausted or on close(),
+ * whichever comes first. Errors, including IOExceptions from the stream, are
+ * thrown from next() as KryoExceptions. Not thread-safe.
+ */
+public class KryoRecordReader<T> implements Iterator<T>, Closeable {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final KryoPool pool;
+  private final Class<T> cls;
+  private final Input framed;
+  private SerDeState state;
+  // Holds one record at a time, grown as needed
+  private byte[] record = new byte[256];
+
+  /** Records written by KryoRecordWriter.write, with their classes */
+  public static KryoRecordReader<Object> withClass(KryoPool pool, InputStream is) {
+    return new KryoRecordReader<Object>(pool, is, null, DEFAULT_BUFFER_SIZE);
+  }
+
+  public static KryoRecordReader<Object> withClass(KryoPool pool, ReadableByteChannel channel) {
+    return withClass(pool, Channels.newInputStream(channel));
+  }
+
+  /** Records of class cls, written by KryoRecordWriter.writeWithoutClass */
+  public static <T> KryoRecordReader<T> of(KryoPool pool, InputStream is, Class<T> cls) {
+    return new KryoRecordReader<T>(pool, is, cls, DEFAULT_BUFFER_SIZE);
+  }
+
+  public static <T> KryoRecordReader<T> of(KryoPool pool, ReadableByteChannel channel, Class<T> cls) {
+    return of(pool, Channels.newInputStream(channel), cls);
+  }
+
+  /** @param cls the class of every record, or null if they were written with their class */
+  public KryoRecordReader(KryoPool pool, InputStream is, Class<T> cls, int bufferSize) {
+    this.pool = pool;
+    this.cls = cls;
+    this.framed = new Input(is, bufferSize);
+    this.state = pool.borrow();
+  }
+
+  public boolean hasNext() {
+    if(state == null) { return false; }
+    if(framed.eof()) {
+      releaseState();
+      return false;
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  public T next() {
+    if(!hasNext()) { throw new NoSuchElementException(); }
+    int size = framed.readVarInt(true);
+    if(size > record.length) { record = new byte[Math.max(size, 2 * record.length)]; }
+    framed.readBytes(record, 0, size);
+    try {
+      state.setInput(record, 0, size);
+      return cls == null ? (T)state.readClassAndObject() : state.readObject(cls);
+    }
+    finally {
+      state.clear();
+    }
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /** Close the stream and give the SerDeState back to the pool */
+  public void close() throws IOException {
+    releaseState();
+    try {
+      framed.close();
+    }
+    catch(KryoException e) {
+      throw KryoRecordWriter.unwrap(e);
+    }
+  }
+
+  private void releaseState() {
+    if(state != null) {
+      pool.release(state);
+      state = null;
+    }
+  }
+}
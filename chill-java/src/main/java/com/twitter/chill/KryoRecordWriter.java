@@ -0,0 +1,126 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/** Writes a stream of records, each framed by its length as an unsigned varint
+ * (the same framing as chill-hadoop's KryoSerializer), to be read back with
+ * KryoRecordReader.
+ *
+ * Frames are gathered in a buffer and only written to the stream when it fills up,
+ * on flush() and on close(). One SerDeState is borrowed from the pool for the life
+ * of the writer, which is not thread-safe.
+ */
+public class KryoRecordWriter implements Closeable, Flushable {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final KryoPool pool;
+  private final Output framed;
+  private SerDeState state;
+
+  public KryoRecordWriter(KryoPool pool, OutputStream os) {
+    this(pool, os, DEFAULT_BUFFER_SIZE);
+  }
+
+  public KryoRecordWriter(KryoPool pool, WritableByteChannel channel) {
+    this(pool, Channels.newOutputStream(channel), DEFAULT_BUFFER_SIZE);
+  }
+
+  public KryoRecordWriter(KryoPool pool, OutputStream os, int bufferSize) {
+    this.pool = pool;
+    this.framed = new Output(os, bufferSize);
+    this.state = pool.borrow();
+  }
+
+  /** Write a record with its class, to be read by KryoRecordReader.withClass */
+  public void write(Object record) throws IOException {
+    checkOpen();
+    try {
+      state.writeClassAndObject(record);
+      writeFrame();
+    }
+    finally {
+      state.clear();
+    }
+  }
+
+  /** Write a record without its class, to be read by KryoRecordReader.of */
+  public void writeWithoutClass(Object record) throws IOException {
+    checkOpen();
+    try {
+      state.writeObject(record);
+      writeFrame();
+    }
+    finally {
+      state.clear();
+    }
+  }
+
+  private void writeFrame() throws IOException {
+    try {
+      framed.writeVarInt(state.numOfWrittenBytes(), true);
+      state.writeOutputTo(framed);
+    }
+    catch(KryoException e) {
+      throw unwrap(e);
+    }
+  }
+
+  public void flush() throws IOException {
+    checkOpen();
+    try {
+      framed.flush();
+    }
+    catch(KryoException e) {
+      throw unwrap(e);
+    }
+  }
+
+  /** Flush, close the stream, and give the SerDeState back to the pool */
+  public void close() throws IOException {
+    if(state == null) { return; }
+    try {
+      framed.close();
+    }
+    catch(KryoException e) {
+      throw unwrap(e);
+    }
+    finally {
+      pool.release(state);
+      state = null;
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if(state == null) { throw new IOException("KryoRecordWriter is closed"); }
+  }
+
+  // Output reports the stream's IOExceptions wrapped in a KryoException
+  static IOException unwrap(KryoException e) {
+    if(e.getCause() instanceof IOException) { return (IOException)e.getCause(); }
+    return new IOException(e);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+/** Callbacks a ResourcePool makes when instrumentation is set on it.
+ * These are called on the borrowing/releasing thread, so implementations
+ * should be cheap, thread-safe and not allocate. See PoolStats.
+ */
+public interface PoolInstrumentation {
+  /** A borrow completed.
+   * @param hit true if an idle instance was reused, false if one was created
+   * @param nanos time spent in borrow, including any wait on a bounded pool
+   */
+  void borrowed(boolean hit, long nanos);
+
+  /** A released instance did not fit in the pool and was dropped */
+  void discarded();
+
+  /** A SerDeState is being released after writing this many bytes */
+  void outputSize(int bytes);
+}
@@ -0,0 +1,105 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for a pool, safe to share between pools and threads.
+ * Updates are striped LongAdders and compare-and-set maxima, so recording
+ * does not allocate or take locks.
+ *
+ * Named stats are kept in a process wide registry, which is how the Hadoop and
+ * Akka integrations publish their pools: look them up with registry().
+ */
+public class PoolStats implements PoolInstrumentation {
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder discarded = new LongAdder();
+  private final LongAdder borrowNanos = new LongAdder();
+  private final AtomicLong maxBorrowNanos = new AtomicLong();
+  private final AtomicLong outputHighWater = new AtomicLong();
+
+  public void borrowed(boolean hit, long nanos) {
+    if(hit) { hits.increment(); }
+    else { misses.increment(); }
+    borrowNanos.add(nanos);
+    updateMax(maxBorrowNanos, nanos);
+  }
+
+  public void discarded() { discarded.increment(); }
+
+  public void outputSize(int bytes) { updateMax(outputHighWater, bytes); }
+
+  private static void updateMax(AtomicLong max, long v) {
+    long current = max.get();
+    while(v > current && !max.compareAndSet(current, v)) {
+      current = max.get();
+    }
+  }
+
+  /** Borrows served by an idle instance */
+  public long getHits() { return hits.sum(); }
+  /** Borrows that had to create a new instance */
+  public long getMisses() { return misses.sum(); }
+  /** Every miss creates exactly one instance */
+  public long getCreated() { return misses.sum(); }
+  /** Released instances dropped because the pool was full */
+  public long getDiscarded() { return discarded.sum(); }
+  public long getTotalBorrowNanos() { return borrowNanos.sum(); }
+  public long getMaxBorrowNanos() { return maxBorrowNanos.get(); }
+  /** The most bytes any pooled SerDeState has written before a release */
+  public long getOutputHighWater() { return outputHighWater.get(); }
+
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    discarded.reset();
+    borrowNanos.reset();
+    maxBorrowNanos.set(0L);
+    outputHighWater.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return "PoolStats(hits=" + getHits() + ", misses=" + getMisses() +
+      ", discarded=" + getDiscarded() + ", totalBorrowNanos=" + getTotalBorrowNanos() +
+      ", maxBorrowNanos=" + getMaxBorrowNanos() + ", outputHighWater=" + getOutputHighWater() + ")";
+  }
+
+  private static final ConcurrentHashMap<String, PoolStats> REGISTRY =
+    new ConcurrentHashMap<String, PoolStats>();
+
+  /** Get or create the stats registered under this name */
+  public static PoolStats named(String name) {
+    PoolStats stats = REGISTRY.get(name);
+    if(null == stats) {
+      PoolStats fresh = new PoolStats();
+      stats = REGISTRY.putIfAbsent(name, fresh);
+      if(null == stats) { stats = fresh; }
+    }
+    return stats;
+  }
+
+  /** Read-only view of every named PoolStats in this JVM */
+  public static Map<String, PoolStats> registry() {
+    return Collections.unmodifiableMap(REGISTRY);
+  }
+}
@@ -17,40 +17,112 @@ limitations under the License.
 package com.twitter.chill;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /** Simple ResourcePool to save on Kryo instances, which
  * are expensive to allocate
  */
 public abstract class ResourcePool<T> {
-  private ArrayBlockingQueue<T> pool;
+  private final ResourceStore<T> pool;
+  // null unless the pool is bounded
+  private final Semaphore permits;
+  // null unless instrumented, so the disabled cost is one branch
+  private volatile PoolInstrumentation instrumentation;
 
   protected abstract T newInstance();
 
+  /** Keep up to size idle instances in a shared ArrayBlockingQueue */
   public ResourcePool(int size) {
-    pool = new ArrayBlockingQueue<T>(size);
+    this(queueStore(size));
   }
 
+  protected ResourcePool(ResourceStore<T> store) {
+    this(store, 0);
+  }
+
+  /** If maxBorrowed is positive, at most that many instances are out at once:
+   * borrow() waits for a release instead of allocating past the bound.
+   * Waiting parks on a j.u.c Semaphore, so virtual threads do not pin their carrier.
+   * With a store that can hold maxBorrowed items this also caps the live instances.
+   */
+  protected ResourcePool(ResourceStore<T> store, int maxBorrowed) {
+    pool = store;
+    permits = (maxBorrowed > 0) ? new Semaphore(maxBorrowed) : null;
+  }
+
+  static <T> ResourceStore<T> queueStore(int size) {
+    final ArrayBlockingQueue<T> queue = new ArrayBlockingQueue<T>(size);
+    return new ResourceStore<T>() {
+      public T poll() { return queue.poll(); }
+      public boolean offer(T item) { return queue.offer(item); }
+    };
+  }
+
+  /** True if borrow() may wait for a release */
+  public boolean isBounded() { return permits != null; }
+
+  /** Report borrows, misses and discards to this instrumentation, or pass null to stop */
+  public void setInstrumentation(PoolInstrumentation inst) { instrumentation = inst; }
+
+  public PoolInstrumentation getInstrumentation() { return instrumentation; }
+
   public T borrow() {
+    PoolInstrumentation inst = instrumentation;
+    long start = (inst == null) ? 0L : System.nanoTime();
+    if(permits != null) { permits.acquireUninterruptibly(); }
+    return take(inst, start);
+  }
+
+  /** Like borrow(), but gives up after the timeout on a bounded pool.
+   * @return null if no instance was released in time
+   */
+  public T borrow(long timeout, TimeUnit unit) throws InterruptedException {
+    PoolInstrumentation inst = instrumentation;
+    long start = (inst == null) ? 0L : System.nanoTime();
+    if(permits != null && !permits.tryAcquire(timeout, unit)) { return null; }
+    return take(inst, start);
+  }
+
+  private T take(PoolInstrumentation inst, long start) {
     try {
       T res = pool.poll();
       if(null == res) {
-        return newInstance();
+        res = newInstance();
+        if(inst != null) { inst.borrowed(false, System.nanoTime() - start); }
       }
-      else {
-        return res;
+      else if(inst != null) {
+        inst.borrowed(true, System.nanoTime() - start);
       }
+      return res;
     }
     catch(Exception x) {
+      if(permits != null) { permits.release(); }
       throw new RuntimeException(x);
     }
   }
 
+  /** Put a fresh instance straight into the store, as if it had been
+   * borrowed and released, but without touching the borrow bound.
+   * @return false if the store is full
+   */
+  protected boolean addIdle(T item) {
+    return pool.offer(item);
+  }
+
   public void release(T item) {
     try {
-      pool.offer(item);
+      if(!pool.offer(item)) {
+        PoolInstrumentation inst = instrumentation;
+        if(inst != null) { inst.discarded(); }
+      }
     }
     catch(Exception x) {
       throw new RuntimeException(x);
     }
+    finally {
+      // Only hand the permit back once the item is visible in the store
+      if(permits != null) { permits.release(); }
+    }
   }
 }
@@ -0,0 +1,30 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+/** Holds the idle instances of a ResourcePool.
+ * Implementations must be safe to call from many threads at once.
+ */
+public interface ResourceStore<T> {
+  /** Remove and return an idle instance, or null if there is none */
+  T poll();
+
+  /** Return an instance to the store.
+   * @return false if the store is full and the item was dropped
+   */
+  boolean offer(T item);
+}
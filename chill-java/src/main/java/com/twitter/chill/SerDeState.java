@@ -17,12 +17,15 @@ limitations under the License.
 package com.twitter.chill;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import java.io.OutputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 /**
  * This holds a Kryo Instance, Input and Output so that these
  * objects can be pooled and no reallocated on each serialization.
@@ -33,6 +36,18 @@ public class SerDeState {
   protected final Output output;
   // To reset the Input
   static final byte[] EMPTY_BUFFER = new byte[0];
+  // The high-water mark loses 1/2^DECAY_SHIFT of its value on every clear
+  static final int DECAY_SHIFT = 3;
+
+  // 0 means keep whatever the output has grown to
+  private int retainSize = 0;
+  // Decaying high-water mark of bytes written between clears
+  private int highWater = 0;
+  // Roughly the output's capacity: the size it was last resized to, or the most written since
+  private int peak = 0;
+  private SizePredictor predictor;
+  // Bytes writeLengthPrefixed reserves for the next size, the width of the last one
+  private int prefixWidth = 1;
 
   protected SerDeState(Kryo k, Input in, Output out) {
     kryo = k;
@@ -42,14 +57,77 @@ public class SerDeState {
 
   /** Call this when to reset the state to the initial state */
   public void clear() {
-    input.setBuffer(EMPTY_BUFFER);
+    setInput(EMPTY_BUFFER);
+    if(retainSize > 0) { retainOutput(numOfWrittenBytes()); }
     output.clear();
   }
 
+  /** Let clear() shrink the output back toward workingSize bytes.
+   * After an outlier message the output is reallocated once it is more than twice
+   * the larger of workingSize and the decaying high-water mark of recent writes,
+   * so pooled memory tracks the recent workload rather than the largest message seen.
+   * 0 (the default) never shrinks.
+   */
+  public void setOutputRetention(int workingSize) {
+    retainSize = Math.max(0, workingSize);
+  }
+
+  public int getOutputRetention() { return retainSize; }
+
+  private void retainOutput(int written) {
+    highWater = Math.max(written, highWater - (highWater >>> DECAY_SHIFT));
+    peak = Math.max(peak, written);
+    int target = Math.max(retainSize, highWater);
+    if(peak > 2 * target && shrinkOutput(target)) {
+      peak = target;
+    }
+  }
+
+  /** Replace the output's storage with one sized for size bytes.
+   * The base class does not know the output's max size, so it cannot; the
+   * KryoPool factories override this.
+   * @return true if the output was resized
+   */
+  protected boolean shrinkOutput(int size) { return false; }
+
+  /** Size the serialized bytes of each object written from now on, and make sure
+   * the output has room for the predicted size before writing one. null stops.
+   */
+  public void setSizePredictor(SizePredictor p) { predictor = p; }
+
+  public SizePredictor getSizePredictor() { return predictor; }
+
+  /** Make room for size bytes, up to the output's max, in the still empty output
+   * if it has less, in one allocation rather than by doubling as it is written.
+   * Like shrinkOutput, only the KryoPool factories that know the max size can.
+   */
+  protected void presizeOutput(int size) { }
+
   public void setInput(byte[] in) { input.setBuffer(in); }
   public void setInput(byte[] in, int offset, int count) { input.setBuffer(in, offset, count); }
   public void setInput(InputStream in) { input.setInputStream(in); }
 
+  /** Read the remaining bytes of buf, which is itself left untouched.
+   * The bytes are read in place, except for a direct buffer given to a
+   * state without a ByteBufferInput, which has to be copied once.
+   */
+  public void setInput(ByteBuffer buf) {
+    if(input instanceof ByteBufferInput) {
+      ((ByteBufferInput)input).setBuffer(buf.duplicate());
+    }
+    else if(buf.hasArray()) {
+      input.setBuffer(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+    }
+    else {
+      byte[] copy = new byte[buf.remaining()];
+      buf.duplicate().get(copy);
+      input.setBuffer(copy);
+    }
+  }
+
+  /** How many bytes of the current input buffer have not been read yet */
+  int numOfUnreadBytes() { return input.limit() - input.position(); }
+
   public int numOfWrittenBytes() { return (int)output.total(); }
   public int numOfReadBytes() { return (int)input.total(); }
 
@@ -60,14 +138,132 @@ public class SerDeState {
   public Object readClassAndObject() {
     return kryo.readClassAndObject(input);
   }
-  public void writeObject(Object o) { kryo.writeObject(output, o); }
-  public void writeClassAndObject(Object o) { kryo.writeClassAndObject(output, o); }
+  public <T> T copy(T o) { return kryo.copy(o); }
+  public void writeObject(Object o) {
+    SizePredictor p = predictor;
+    if(p == null || o == null) { kryo.writeObject(output, o); }
+    else {
+      int start = beforePredictedWrite(p, o);
+      kryo.writeObject(output, o);
+      p.record(o.getClass(), numOfWrittenBytes() - start);
+    }
+  }
+  public void writeClassAndObject(Object o) {
+    SizePredictor p = predictor;
+    if(p == null || o == null) { kryo.writeClassAndObject(output, o); }
+    else {
+      int start = beforePredictedWrite(p, o);
+      kryo.writeClassAndObject(output, o);
+      p.record(o.getClass(), numOfWrittenBytes() - start);
+    }
+  }
+
+  private int beforePredictedWrite(SizePredictor p, Object o) {
+    int start = numOfWrittenBytes();
+    if(start == 0) {
+      int predicted = p.estimate(o.getClass());
+      if(predicted > 0) { presizeOutput(predicted); }
+    }
+    return start;
+  }
+
+  /** Serialize o into buf at its position, and advance the position past it.
+   * This state's output is copied into buf once; states built on a ByteBufferOutput
+   * (KryoPool.withByteBuffers) write into buf directly.
+   * @return the number of bytes written
+   * @throws KryoException if buf has too little room left, in which case its
+   * position is unchanged
+   */
+  public int writeObject(Object o, ByteBuffer buf) {
+    writeObject(o);
+    return writeOutputTo(buf);
+  }
+  public int writeClassAndObject(Object o, ByteBuffer buf) {
+    writeClassAndObject(o);
+    return writeOutputTo(buf);
+  }
+
+  /** Append o, without its class, after the unsigned varint of its serialized size.
+   * Room for the varint is reserved before o is written, as wide as the last one this
+   * state wrote, so the bytes of o are only moved when the width of the size changes.
+   * If o cannot be written, the output is left as it was.
+   * @return the size of o, not counting the varint
+   */
+  public int writeLengthPrefixed(Object o) {
+    int start = output.position();
+    int reserved = prefixWidth;
+    try {
+      for(int i = 0; i < reserved; i++) { output.writeByte(0); }
+      writeObject(o);
+    }
+    catch(RuntimeException e) {
+      // Leave what was written before o intact
+      output.setPosition(start);
+      throw e;
+    }
+    int size = output.position() - start - reserved;
+    int width = varIntWidth(size);
+    if(width != reserved) {
+      // Make sure the output has room before moving o right
+      for(int i = reserved; i < width; i++) { output.writeByte(0); }
+      moveOutput(start + reserved, start + width, size);
+      prefixWidth = width;
+    }
+    output.setPosition(start);
+    // Output.writeVarInt is a fixed int on an UnsafeOutput
+    int v = size;
+    while((v & ~0x7F) != 0) {
+      output.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    output.writeByte(v);
+    output.setPosition(start + width + size);
+    return size;
+  }
+
+  static int varIntWidth(int v) {
+    if((v >>> 7) == 0) { return 1; }
+    if((v >>> 14) == 0) { return 2; }
+    if((v >>> 21) == 0) { return 3; }
+    return (v >>> 28) == 0 ? 4 : 5;
+  }
+
+  /** Move length written bytes of the output from position from to position to.
+   * Both ranges are within what has been written, and may overlap.
+   */
+  protected void moveOutput(int from, int to, int length) {
+    byte[] buf = output.getBuffer();
+    System.arraycopy(buf, from, buf, to, length);
+  }
 
   public byte[] outputToBytes() { return output.toBytes(); }
   // There for ByteArrayOutputStream cases this can be optimized
   public void writeOutputTo(OutputStream os) throws IOException {
     os.write(output.getBuffer(), 0, output.position());
   }
+  /** Copy the output into buf at its position, see writeObject(Object, ByteBuffer) */
+  public int writeOutputTo(ByteBuffer buf) {
+    int size = numOfWrittenBytes();
+    checkRoom(buf, size);
+    buf.put(output.getBuffer(), 0, output.position());
+    return size;
+  }
+
+  /** Copy the output into buf starting at offset.
+   * @return the number of bytes copied, or -1, copying nothing, if they do not fit
+   */
+  public int writeOutputTo(byte[] buf, int offset) {
+    int size = numOfWrittenBytes();
+    if(size > buf.length - offset) { return -1; }
+    System.arraycopy(output.getBuffer(), 0, buf, offset, size);
+    return size;
+  }
+
+  static void checkRoom(ByteBuffer buf, int size) {
+    if(size > buf.remaining()) {
+      throw new KryoException("Buffer overflow. Available: " + buf.remaining() + ", required: " + size);
+    }
+  }
 
   public boolean hasRegistration(Class obj) {
     return kryo.getRegistration(obj) != null;
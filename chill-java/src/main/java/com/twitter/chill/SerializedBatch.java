@@ -0,0 +1,44 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+/** Objects serialized back to back into one array, see KryoPool.toBatchWithClass.
+ * Object i occupies getBytes()[getStart(i) until getEnd(i)], and so can be read
+ * on its own with KryoPool.fromBytes, or the whole batch with KryoPool.fromBatch.
+ */
+public class SerializedBatch {
+  private final byte[] bytes;
+  private final int[] ends;
+
+  public SerializedBatch(byte[] bytes, int[] ends) {
+    this.bytes = bytes;
+    this.ends = ends;
+  }
+
+  /** The number of objects in the batch */
+  public int size() { return ends.length; }
+
+  /** All the serialized objects; may not be modified */
+  public byte[] getBytes() { return bytes; }
+
+  /** The number of bytes used by the whole batch */
+  public int getLength() { return ends.length == 0 ? 0 : ends[ends.length - 1]; }
+
+  public int getStart(int i) { return i == 0 ? 0 : ends[i - 1]; }
+
+  public int getEnd(int i) { return ends[i]; }
+}
@@ -0,0 +1,26 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+/**
+ * Marks a Serializer that keeps no state of its own between calls, or only
+ * state guarded for use from several threads, so one instance can serve many
+ * Kryo instances. TemplateKryoInstantiator and SharedClassResolver only share
+ * serializers marked with this, or the stateless ones Kryo itself provides.
+ */
+public interface ShareableSerializer {
+}
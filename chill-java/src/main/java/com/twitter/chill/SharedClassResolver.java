@@ -0,0 +1,232 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.Util;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** A ClassResolver that looks classes up in a Table shared by every Kryo
+ * stamped by the same TemplateKryoInstantiator.
+ *
+ * The table holds the template's registrations whose serializers are shareable,
+ * the implicit registrations of unregistered classes whose default serializer
+ * is shareable, and a cache of class names to classes. The implicit registrations
+ * and the name cache hold classes and class loaders weakly, so sharing a table does
+ * not keep them from being unloaded. Everything else, and the
+ * class name ids written and read within one object graph, stays in this
+ * resolver, which like any ClassResolver belongs to a single Kryo. Registrations
+ * made on this Kryo take precedence over the table.
+ *
+ * Until a table is attached with share(), this is a DefaultClassResolver.
+ */
+public class SharedClassResolver extends DefaultClassResolver {
+  private Table table;
+  // DefaultClassResolver keeps its own memos private, so these cover the table too
+  private Class<?> lastClass;
+  private Registration lastClassRegistration;
+  private int lastClassId = -1;
+  private Registration lastClassIdRegistration;
+  // The table's name cache for namesLoader, so lookups only touch the shared, weakly
+  // keyed map of loaders when the Kryo's class loader changes
+  private ClassLoader namesLoader;
+  private ConcurrentMap<String, WeakReference<Class<?>>> loaderNames;
+
+  /** Registrations and class names shared by many SharedClassResolvers, safe for concurrent use */
+  static final class Table {
+    private final Registration[] byId;
+    // Only the template's registrations, whose classes the template holds anyway
+    private final Map<Class<?>, Registration> byClass = new HashMap<Class<?>, Registration>();
+    // Stored on each class, so it does not keep the class alive
+    private final ClassValue<AtomicReference<Registration>> implicit =
+      new ClassValue<AtomicReference<Registration>>() {
+        protected AtomicReference<Registration> computeValue(Class<?> type) {
+          return new AtomicReference<Registration>();
+        }
+      };
+    // The classes loaded by a loader refer to it, so they are held weakly as well
+    private final Map<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>> names =
+      Collections.synchronizedMap(new WeakHashMap<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>>());
+
+    /** @param registrations all with serializers that can be shared */
+    Table(Iterable<Registration> registrations) {
+      int maxId = -1;
+      for(Registration r : registrations) { maxId = Math.max(maxId, r.getId()); }
+      byId = new Registration[maxId + 1];
+      for(Registration r : registrations) {
+        byId[r.getId()] = r;
+        byClass.put(r.getType(), r);
+        if(r.getType().isPrimitive()) { byClass.put(Util.getWrapperClass(r.getType()), r); }
+      }
+    }
+
+    Registration get(int id) { return id >= 0 && id < byId.length ? byId[id] : null; }
+
+    Registration get(Class<?> type) {
+      Registration r = byClass.get(type);
+      return r != null ? r : implicit.get(type).get();
+    }
+
+    /** The implicit registration already shared for r's class, if any, else r */
+    Registration shareImplicit(Registration r) {
+      AtomicReference<Registration> ref = implicit.get(r.getType());
+      return ref.compareAndSet(null, r) ? r : ref.get();
+    }
+
+    /** The name cache for cl. Takes a lock, so resolvers keep what it returns */
+    ConcurrentMap<String, WeakReference<Class<?>>> names(ClassLoader cl) {
+      synchronized(names) {
+        ConcurrentMap<String, WeakReference<Class<?>>> m = names.get(cl);
+        if(m == null) {
+          m = new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+          names.put(cl, m);
+        }
+        return m;
+      }
+    }
+  }
+
+  /** Look classes up in table from now on. Local registrations of the same
+   * classes or ids are dropped, so the table's win.
+   */
+  void share(Table t) {
+    if(table != null && table != t) { throw new IllegalStateException("Already sharing another table"); }
+    for(Registration r : t.byClass.values()) {
+      if(r.getId() != NAME && idToRegistration.get(r.getId()) != null) { idToRegistration.remove(r.getId()); }
+      classToRegistration.remove(r.getType());
+    }
+    for(Registration r : t.byId) {
+      if(r != null && r.getType().isPrimitive()) { classToRegistration.remove(Util.getWrapperClass(r.getType())); }
+    }
+    table = t;
+    clearMemos();
+  }
+
+  /** True if a table is attached */
+  public boolean isShared() { return table != null; }
+
+  private void clearMemos() {
+    lastClass = null;
+    lastClassRegistration = null;
+    lastClassId = -1;
+    lastClassIdRegistration = null;
+  }
+
+  @Override
+  public Registration register(Registration registration) {
+    clearMemos();
+    return super.register(registration);
+  }
+
+  /** Drop the local registration with this id, if any, and forget any lookup of it.
+   * ClassResolver only declares this from Kryo 5 on, where it overrides.
+   */
+  public Registration unregister(int classID) {
+    Registration r = idToRegistration.remove(classID);
+    if(r != null) {
+      classToRegistration.remove(r.getType());
+      if(r.getType().isPrimitive()) { classToRegistration.remove(Util.getWrapperClass(r.getType())); }
+    }
+    clearMemos();
+    return r;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes") // ClassResolver takes a raw Class
+  public Registration registerImplicit(Class type) {
+    Registration r = new Registration(type, kryo.getDefaultSerializer(type), NAME);
+    if(table != null && TemplateKryoInstantiator.isShareable(r.getSerializer())) {
+      return table.shareImplicit(r);
+    }
+    return super.register(r);
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public Registration getRegistration(Class type) {
+    if(type == lastClass) { return lastClassRegistration; }
+    Registration r = classToRegistration.get(type);
+    if(r == null && table != null) { r = table.get(type); }
+    if(r != null) {
+      lastClass = type;
+      lastClassRegistration = r;
+    }
+    return r;
+  }
+
+  @Override
+  public Registration getRegistration(int classID) {
+    Registration r = idToRegistration.get(classID);
+    if(r == null && table != null) { r = table.get(classID); }
+    return r;
+  }
+
+  @Override
+  public Registration readClass(Input input) {
+    if(table == null) { return super.readClass(input); }
+    int classID = input.readVarInt(true);
+    switch(classID) {
+      case Kryo.NULL:
+        return null;
+      case NAME + 2: // Offset for NAME and NULL
+        return readName(input);
+    }
+    if(classID == lastClassId) { return lastClassIdRegistration; }
+    Registration r = getRegistration(classID - 2);
+    if(r == null) { throw new KryoException("Encountered unregistered class ID: " + (classID - 2)); }
+    lastClassId = classID;
+    lastClassIdRegistration = r;
+    return r;
+  }
+
+  /** Resolves class names through the shared cache, loading and caching them on a miss */
+  @Override
+  protected Class<?> getTypeByName(String className) {
+    ClassLoader cl = kryo.getClassLoader();
+    if(table == null || cl == null) { return super.getTypeByName(className); }
+    if(cl != namesLoader) {
+      loaderNames = table.names(cl);
+      namesLoader = cl;
+    }
+    ConcurrentMap<String, WeakReference<Class<?>>> names = loaderNames;
+    WeakReference<Class<?>> ref = names.get(className);
+    Class<?> type = ref == null ? null : ref.get();
+    if(type == null) {
+      try {
+        type = Class.forName(className, false, cl);
+      }
+      catch(ClassNotFoundException e) {
+        // DefaultClassResolver retries, and reports the failure
+        return null;
+      }
+      names.put(className, new WeakReference<Class<?>>(type));
+    }
+    return type;
+  }
+}
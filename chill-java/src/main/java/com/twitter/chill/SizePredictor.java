@@ -0,0 +1,53 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+/** Keeps a moving estimate, per class, of how many bytes an object serializes to.
+ *
+ * An estimate jumps straight up to any larger size seen, so a buffer sized by it
+ * rarely has to grow, and otherwise drifts down by 1/2^DECAY_SHIFT of the gap on
+ * every record. Updates from many threads may race and lose a sample, which only
+ * makes the estimate a little staler. See KryoPool.setSizePredictor.
+ */
+public class SizePredictor {
+  static final int DECAY_SHIFT = 3;
+
+  private static final class Estimate {
+    volatile int bytes;
+  }
+
+  private final ClassValue<Estimate> estimates = new ClassValue<Estimate>() {
+    protected Estimate computeValue(Class<?> cls) { return new Estimate(); }
+  };
+
+  /** Bytes an instance of cls is expected to take, or 0 if none has been recorded */
+  public int estimate(Class<?> cls) {
+    return estimates.get(cls).bytes;
+  }
+
+  /** Bytes obj is expected to take, e.g. to size a buffer for KryoPool.toByteBufferWithClass */
+  public int estimate(Object obj) {
+    return obj == null ? 0 : estimate(obj.getClass());
+  }
+
+  /** Note that an instance of cls took bytes */
+  public void record(Class<?> cls, int bytes) {
+    Estimate e = estimates.get(cls);
+    int prev = e.bytes;
+    e.bytes = bytes >= prev ? bytes : prev - ((prev - bytes) >>> DECAY_SHIFT);
+  }
+}
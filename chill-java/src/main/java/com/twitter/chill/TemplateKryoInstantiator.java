@@ -0,0 +1,288 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.factories.PseudoSerializerFactory;
+import com.esotericsoftware.kryo.factories.SerializerFactory;
+import com.esotericsoftware.kryo.serializers.ClosureSerializer;
+import com.esotericsoftware.kryo.serializers.DefaultArraySerializers;
+import com.esotericsoftware.kryo.serializers.DefaultSerializers;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializerConfig;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.esotericsoftware.kryo.serializers.OptionalSerializers;
+import com.esotericsoftware.kryo.serializers.TimeSerializers;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.IntMap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Runs a registrar once, on a template Kryo, and stamps every later Kryo from it.
+ *
+ * Each newKryo() takes a fresh Kryo from the base instantiator and copies in the
+ * template's default serializers and registrations (with the same IDs) instead of
+ * running the registrar again. Serializers that implement ShareableSerializer, and
+ * Kryo's own stateless ones, are shared by every Kryo. The rest are rebuilt for each
+ * Kryo: FieldSerializers with the template's FieldSerializerConfig, and anything else
+ * from the new Kryo's default serializer for the class, but only if that holds the same
+ * configuration as the registered one. Registrars should only register classes and add
+ * default serializers, anything else they do to the Kryo is not copied.
+ *
+ * If the new Kryo resolves classes with a SharedClassResolver, the shared
+ * registrations are not copied at all: every such Kryo looks them up in one table.
+ *
+ * If the template cannot be stamped faithfully, because a serializer cannot be shared and
+ * a rebuilt one would not match it, or this Kryo version lays out its tables
+ * differently, every newKryo() simply runs the registrar.
+ */
+public class TemplateKryoInstantiator extends KryoInstantiator {
+  private static final Field DEFAULT_SERIALIZERS;
+  private static final Field ENTRY_TYPE;
+  private static final Field ENTRY_FACTORY;
+  private static final Field ID_TO_REGISTRATION;
+  private static final Field FIELD_CONFIG;
+  private static final Method CONFIG_CLONE;
+  private static final Constructor<?> FIELD_SERIALIZER;
+  // Kryo's serializers that keep no state, so are safe to share, along with
+  // everything in OptionalSerializers and TimeSerializers
+  private static final Set<Class<?>> KRYO_SHAREABLE = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+    DefaultSerializers.BooleanSerializer.class, DefaultSerializers.ByteSerializer.class,
+    DefaultSerializers.CharSerializer.class, DefaultSerializers.ShortSerializer.class,
+    DefaultSerializers.IntSerializer.class, DefaultSerializers.LongSerializer.class,
+    DefaultSerializers.FloatSerializer.class, DefaultSerializers.DoubleSerializer.class,
+    DefaultSerializers.StringSerializer.class, DefaultSerializers.VoidSerializer.class,
+    DefaultSerializers.ClassSerializer.class,
+    DefaultArraySerializers.BooleanArraySerializer.class, DefaultArraySerializers.ByteArraySerializer.class,
+    DefaultArraySerializers.CharArraySerializer.class, DefaultArraySerializers.ShortArraySerializer.class,
+    DefaultArraySerializers.IntArraySerializer.class, DefaultArraySerializers.LongArraySerializer.class,
+    DefaultArraySerializers.FloatArraySerializer.class, DefaultArraySerializers.DoubleArraySerializer.class,
+    DefaultArraySerializers.StringArraySerializer.class,
+    ClosureSerializer.class, JavaSerializer.class));
+  static {
+    Field defaults = null, type = null, factory = null, ids = null, config = null;
+    Method configClone = null;
+    Constructor<?> fieldSerializer = null;
+    try {
+      defaults = accessible(Kryo.class.getDeclaredField("defaultSerializers"));
+      Class<?> entry = Class.forName("com.esotericsoftware.kryo.Kryo$DefaultSerializerEntry");
+      type = accessible(entry.getDeclaredField("type"));
+      factory = accessible(entry.getDeclaredField("serializerFactory"));
+      ids = accessible(DefaultClassResolver.class.getDeclaredField("idToRegistration"));
+      config = accessible(FieldSerializer.class.getDeclaredField("config"));
+      configClone = FieldSerializerConfig.class.getDeclaredMethod("clone");
+      configClone.setAccessible(true);
+      fieldSerializer = FieldSerializer.class.getDeclaredConstructor(
+        Kryo.class, Class.class, Class[].class, FieldSerializerConfig.class);
+      fieldSerializer.setAccessible(true);
+    }
+    catch(Exception e) {
+      defaults = null;
+    }
+    DEFAULT_SERIALIZERS = defaults;
+    ENTRY_TYPE = type;
+    ENTRY_FACTORY = factory;
+    ID_TO_REGISTRATION = ids;
+    FIELD_CONFIG = config;
+    CONFIG_CLONE = configClone;
+    FIELD_SERIALIZER = fieldSerializer;
+  }
+
+  private final KryoInstantiator base;
+  private final IKryoRegistrar registrar;
+  private transient volatile Template template;
+  private transient volatile boolean unstampable;
+
+  public TemplateKryoInstantiator(KryoInstantiator base, IKryoRegistrar registrar) {
+    this.base = base;
+    this.registrar = registrar;
+  }
+
+  @Override
+  public Kryo newKryo() {
+    Kryo k = base.newKryo();
+    Template t = template();
+    if(t == null) { registrar.apply(k); }
+    else { t.stamp(k); }
+    return k;
+  }
+
+  /** True if new Kryo instances are stamped from the template, false if they run the registrar */
+  public boolean isStamping() { return template() != null; }
+
+  private Template template() {
+    Template t = template;
+    if(t != null || unstampable) { return t; }
+    synchronized(this) {
+      if(template == null && !unstampable) {
+        Kryo k = base.newKryo();
+        registrar.apply(k);
+        template = Template.of(k);
+        unstampable = template == null;
+      }
+      return template;
+    }
+  }
+
+  /** True if one instance of ser can serve every Kryo: it implements ShareableSerializer,
+   * or is one of Kryo's stateless serializers
+   */
+  public static boolean isShareable(Serializer<?> ser) {
+    Class<?> c = ser.getClass();
+    return ser instanceof ShareableSerializer
+      || KRYO_SHAREABLE.contains(c)
+      || c.getEnclosingClass() == OptionalSerializers.class
+      || c.getEnclosingClass() == TimeSerializers.class;
+  }
+
+  private static Field accessible(Field f) {
+    f.setAccessible(true);
+    return f;
+  }
+
+  private static final class Template {
+    private final List<Object> defaults;
+    private final Registration[] registrations;
+    private final boolean[] shared;
+    private final SharedClassResolver.Table table;
+
+    private Template(List<Object> defaults, Registration[] registrations, boolean[] shared) {
+      this.defaults = defaults;
+      this.registrations = registrations;
+      this.shared = shared;
+      List<Registration> shareable = new ArrayList<Registration>();
+      for(int i = 0; i < registrations.length; i++) {
+        if(shared[i]) { shareable.add(registrations[i]); }
+      }
+      this.table = new SharedClassResolver.Table(shareable);
+    }
+
+    /** null if k cannot be copied faithfully */
+    static Template of(Kryo k) {
+      if(DEFAULT_SERIALIZERS == null || !(k.getClassResolver() instanceof DefaultClassResolver)) { return null; }
+      try {
+        List<Object> defaults = new ArrayList<Object>((List<?>)DEFAULT_SERIALIZERS.get(k));
+        for(Object entry : defaults) {
+          SerializerFactory factory = (SerializerFactory)ENTRY_FACTORY.get(entry);
+          if(factory instanceof PseudoSerializerFactory
+              && !isShareable(factory.makeSerializer(k, (Class<?>)ENTRY_TYPE.get(entry)))) {
+            return null;
+          }
+        }
+        IntMap<?> ids = (IntMap<?>)ID_TO_REGISTRATION.get(k.getClassResolver());
+        Registration[] registrations = new Registration[ids.size];
+        boolean[] shared = new boolean[ids.size];
+        int i = 0;
+        for(Object o : ids.values()) {
+          Registration r = (Registration)o;
+          registrations[i] = r;
+          shared[i] = isShareable(r.getSerializer());
+          if(!shared[i] && !sameSerializer(r.getSerializer(), rebuild(k, r))) {
+            return null;
+          }
+          i++;
+        }
+        return new Template(defaults, registrations, shared);
+      }
+      catch(Exception e) {
+        return null;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void stamp(Kryo k) {
+      try {
+        List<Object> target = (List<Object>)DEFAULT_SERIALIZERS.get(k);
+        target.clear();
+        target.addAll(defaults);
+      }
+      catch(IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+      boolean sharing = k.getClassResolver() instanceof SharedClassResolver;
+      if(sharing) { ((SharedClassResolver)k.getClassResolver()).share(table); }
+      for(int i = 0; i < registrations.length; i++) {
+        Registration r = registrations[i];
+        if(shared[i] && sharing) { continue; }
+        Serializer<?> ser = shared[i] ? r.getSerializer() : rebuild(k, r);
+        k.register(new Registration(r.getType(), ser, r.getId()));
+      }
+    }
+
+    // A new instance, for k, of the stateful serializer in r
+    private static Serializer<?> rebuild(Kryo k, Registration r) {
+      Serializer<?> ser = r.getSerializer();
+      if(ser.getClass() != FieldSerializer.class) { return k.getDefaultSerializer(r.getType()); }
+      try {
+        Object config = CONFIG_CLONE.invoke(FIELD_CONFIG.get(ser));
+        return (Serializer<?>)FIELD_SERIALIZER.newInstance(k, r.getType(), null, config);
+      }
+      catch(Exception e) {
+        throw new IllegalStateException("Could not copy the FieldSerializer for " + r.getType(), e);
+      }
+    }
+
+    // Whether a rebuilt serializer does the same job as a registered stateful one
+    private static boolean sameSerializer(Serializer<?> registered, Serializer<?> fresh) {
+      if(registered.getClass() != fresh.getClass()) { return false; }
+      if(!(registered instanceof FieldSerializer)) { return sameConfig(registered, fresh); }
+      FieldSerializer<?> a = (FieldSerializer<?>)registered;
+      FieldSerializer<?> b = (FieldSerializer<?>)fresh;
+      return a.getUseAsmEnabled() == b.getUseAsmEnabled()
+        && a.getCopyTransient() == b.getCopyTransient()
+        && a.getSerializeTransient() == b.getSerializeTransient()
+        && sameFields(a.getFields(), b.getFields())
+        && sameFields(a.getTransientFields(), b.getTransientFields());
+    }
+
+    // Whether every field, other than the Kryo it belongs to, is equal, so the
+    // registrar did not configure the serializer (say a MapSerializer's key class)
+    private static boolean sameConfig(Serializer<?> a, Serializer<?> b) {
+      for(Class<?> c = a.getClass(); c != null; c = c.getSuperclass()) {
+        for(Field f : c.getDeclaredFields()) {
+          if(Modifier.isStatic(f.getModifiers()) || f.getType() == Kryo.class) { continue; }
+          try {
+            f.setAccessible(true);
+            if(!Arrays.deepEquals(new Object[] { f.get(a) }, new Object[] { f.get(b) })) { return false; }
+          }
+          catch(Exception e) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private static boolean sameFields(FieldSerializer.CachedField<?>[] a, FieldSerializer.CachedField<?>[] b) {
+      if(a.length != b.length) { return false; }
+      for(int i = 0; i < a.length; i++) {
+        if(!a[i].getField().equals(b[i].getField())) { return false; }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.twitter.chill;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Lock-free ResourceStore that keeps instances close to the threads using them.
+ *
+ * Each thread hashes to a home slot, and tries that slot and the next few first on
+ * both poll and offer, so a thread that keeps borrowing and releasing touches only
+ * its own cache lines. Past those, offer hands the item to a shared overflow queue,
+ * and poll takes from that queue and then steals from every other slot, so an
+ * instance released on one thread can always be borrowed on another.
+ *
+ * Half the size (rounded up) is slots and the rest overflow, so at most size
+ * instances are kept in all. Nothing ever blocks.
+ */
+public class ThreadAffineStore<T> implements ResourceStore<T> {
+  // Space the slots a cache line apart (16 compressed references) to avoid false sharing
+  private static final int STRIDE = 16;
+  // Slots tried before the overflow queue
+  private static final int PROBES = 4;
+
+  private final AtomicReferenceArray<T> slots;
+  private final ConcurrentLinkedQueue<T> overflow = new ConcurrentLinkedQueue<T>();
+  // Items in overflow, or about to be, bounded by overflowCapacity
+  private final AtomicInteger overflowSize = new AtomicInteger();
+  private final int size;
+  private final int slotCount;
+  private final int overflowCapacity;
+  private final int probes;
+
+  /** Keep up to size instances */
+  public ThreadAffineStore(int size) {
+    if(size <= 0) {
+      throw new IllegalArgumentException("size must be positive: " + size);
+    }
+    this.size = size;
+    slotCount = (size + 1) / 2;
+    overflowCapacity = size - slotCount;
+    probes = Math.min(slotCount, PROBES);
+    slots = new AtomicReferenceArray<T>(slotCount * STRIDE);
+  }
+
+  /** The most instances this keeps, in slots and overflow together */
+  public int size() { return size; }
+
+  private int home() {
+    long id = Thread.currentThread().getId();
+    // Fibonacci hashing spreads sequential thread ids across the slots
+    int h = (int)((id * 0x9E3779B97F4A7C15L) >>> 32);
+    return (h & Integer.MAX_VALUE) % slotCount;
+  }
+
+  public T poll() {
+    int home = home();
+    T item = take(home, 0, probes);
+    if(item != null) { return item; }
+    item = overflow.poll();
+    if(item != null) {
+      overflowSize.decrementAndGet();
+      return item;
+    }
+    // Steal from slots other threads released into
+    return take(home, probes, slotCount);
+  }
+
+  public boolean offer(T item) {
+    int home = home();
+    if(put(home, 0, probes, item)) { return true; }
+    for(int n = overflowSize.get(); n < overflowCapacity; n = overflowSize.get()) {
+      if(overflowSize.compareAndSet(n, n + 1)) {
+        overflow.offer(item);
+        return true;
+      }
+    }
+    return put(home, probes, slotCount, item);
+  }
+
+  // The item in the first full slot from home + from until home + to, emptying it
+  private T take(int home, int from, int to) {
+    for(int i = from; i < to; i++) {
+      int idx = (home + i) % slotCount * STRIDE;
+      T item = slots.get(idx);
+      if(item != null && slots.compareAndSet(idx, item, null)) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  // Whether item went into the first empty slot from home + from until home + to
+  private boolean put(int home, int from, int to, T item) {
+    for(int i = from; i < to; i++) {
+      int idx = (home + i) % slotCount * STRIDE;
+      if(slots.get(idx) == null && slots.compareAndSet(idx, null, item)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -43,6 +43,11 @@ abstract public class Config {
     if(null == bval) { return defval; }
     else { return Boolean.valueOf(bval).booleanValue(); }
   }
+  public int getInt(String key, int defval) {
+    String ival = get(key);
+    if(null == ival) { return defval; }
+    else { return Integer.parseInt(ival.trim()); }
+  }
   public void setBoolean(String key, Boolean v) {
     if(null == v) { set(key, null); }
     else { set(key, v.toString()); }
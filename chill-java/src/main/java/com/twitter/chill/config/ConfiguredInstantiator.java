@@ -18,7 +18,15 @@ package com.twitter.chill.config;
 import com.twitter.chill.KryoInstantiator;
 import com.twitter.chill.Base64;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
@@ -35,9 +43,24 @@ import com.esotericsoftware.kryo.io.Output;
  *
  * In the case of serialization, we first reflect to create the KryoInstatiator
  * we use to get the Kryo we need to deserialize.
+ *
+ * The delegate is only built, once, when it is first needed, so constructing one
+ * of these is cheap. Two are equal when they are configured with the same value and,
+ * if the reflected class is a ReflectingInstantiator, the same values for its keys.
+ * A reflected class that reads any other Config builds its delegate right away,
+ * as the Config is not kept, and is only equal to itself. So is one whose class
+ * cannot be loaded yet, as it is not known what it reads.
  */
 public class ConfiguredInstantiator extends KryoInstantiator {
-  protected final KryoInstantiator delegate;
+  // null until the first newKryo() or getDelegate()
+  private volatile KryoInstantiator delegate;
+  private final String key;
+  // Whether the reflected class could be loaded, so readsConfig is known
+  private final boolean resolved;
+  // Whether the reflected class has a Config constructor
+  private final boolean readsConfig;
+  // Values of ReflectingInstantiator.KEYS if that is the reflected class, else null
+  private final String[] settings;
 
   /** Key we use to configure this class.
    * Format: {@literal<class of KryoInstantiator>(:<base64 serialized instantiator>)}
@@ -46,42 +69,131 @@ public class ConfiguredInstantiator extends KryoInstantiator {
    */
   public static final String KEY = "com.twitter.chill.config.configuredinstantiator";
 
+  /** System property bounding how many serialized instantiators are kept deserialized,
+   * by config value, so JVMs running several jobs do not decode them over and over.
+   * Defaults to DEFAULT_CACHE_SIZE, 0 disables the cache. See setCacheSize.
+   */
+  public static final String CACHE_SIZE = "com.twitter.chill.config.instantiatorcachesize";
+  public static final int DEFAULT_CACHE_SIZE = 16;
+
+  /** @throws ConfigurationException if the key is malformed, or the reflected class reads
+   * a Config other than through ReflectingInstantiator's keys and its delegate cannot be built.
+   * Other problems, such as a missing class, surface from the first newKryo() or getDelegate() instead.
+   */
   public ConfiguredInstantiator(Config conf) throws ConfigurationException {
-    String key = conf.get(KEY);
-    if (null == key) {
-      delegate = new KryoInstantiator();
+    key = conf.get(KEY);
+    if(null != key && null == fastSplitKey(key)) {
+      throw new ConfigurationException("Invalid Config Key: " + key);
+    }
+    Class<?> reflected = reflectedClass(key);
+    resolved = null == key || null != reflected;
+    readsConfig = reflected != null && hasConfigConstructor(reflected);
+    if(reflected == ReflectingInstantiator.class) {
+      settings = new String[ReflectingInstantiator.KEYS.length];
+      for(int i = 0; i < settings.length; i++) { settings[i] = conf.get(ReflectingInstantiator.KEYS[i]); }
     }
     else {
-      String[] parts = fastSplitKey(key);
-      if(parts == null) {
-        throw new ConfigurationException("Invalid Config Key: " + conf.get(KEY));
-      }
-      KryoInstantiator reflected = null;
-      try { reflected = reflect((Class<? extends KryoInstantiator>)Class.forName(parts[0], true, Thread.currentThread().getContextClassLoader()), conf); }
-      catch(ClassNotFoundException x) {
-        throw new ConfigurationException("Could not find class for: " + parts[0], x);
-      }
+      settings = null;
+      if(readsConfig) { delegate = buildDelegate(conf); }
+    }
+  }
 
-      if(parts.length == 2) {
-        delegate = fastDeserialize(reflected.newKryo(), parts[1]);
-        if(null == delegate) {
-          throw new ConfigurationException("Null delegate from: " + parts[1]);
+  /** Calls through to the delegate */
+  public Kryo newKryo() { return getDelegate().newKryo(); }
+
+  /** Return the delegated KryoInstantiator, building it if this is the first call
+   * @throws RuntimeException wrapping the ConfigurationException if it cannot be built
+   */
+  public KryoInstantiator getDelegate() {
+    KryoInstantiator d = delegate;
+    if(null == d) {
+      synchronized(this) {
+        d = delegate;
+        if(null == d) {
+          try {
+            if(!resolved) { checkReadsNoConfig(); }
+            d = buildDelegate(settingsConfig());
+          }
+          catch(ConfigurationException cx) { throw new RuntimeException(cx); }
+          delegate = d;
         }
       }
-      else {
-        delegate = reflected;
+    }
+    return d;
+  }
+
+  private KryoInstantiator buildDelegate(Config conf) throws ConfigurationException {
+    if(null == key) { return new KryoInstantiator(); }
+    String[] parts = fastSplitKey(key);
+    if(parts.length == 2) {
+      KryoInstantiator deser = fastDeserialize(conf, parts[0], key, parts[1]);
+      if(null == deser) {
+        throw new ConfigurationException("Null delegate from: " + parts[1]);
       }
+      return deser;
     }
+    return reflect(forName(parts[0]), conf);
   }
 
-  /** Calls through to the delegate */
-  public Kryo newKryo() { return delegate.newKryo(); }
+  // A class that could not be loaded at construction can only be built if it needs no Config
+  private void checkReadsNoConfig() throws ConfigurationException {
+    String className = fastSplitKey(key)[0];
+    if(hasConfigConstructor(forName(className))) {
+      throw new ConfigurationException(
+        className + " takes a Config, but could not be loaded when this was configured");
+    }
+  }
 
-  /** Return the delegated KryoInstantiator */
-  public KryoInstantiator getDelegate() {
-    return delegate;
+  // The ReflectingInstantiator settings as a Config, or null if there are none
+  private Config settingsConfig() {
+    if(null == settings) { return null; }
+    Config conf = new JavaMapConfig();
+    for(int i = 0; i < settings.length; i++) {
+      if(null != settings[i]) { conf.set(ReflectingInstantiator.KEYS[i], settings[i]); }
+    }
+    return conf;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends KryoInstantiator> forName(String className) throws ConfigurationException {
+    try {
+      return (Class<? extends KryoInstantiator>)Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+    }
+    catch(ClassNotFoundException x) {
+      throw new ConfigurationException("Could not find class for: " + className, x);
+    }
+  }
+
+  // The class named in key, or null if there is none or it cannot be loaded yet
+  private static Class<?> reflectedClass(String key) {
+    if(null == key) { return null; }
+    try { return forName(fastSplitKey(key)[0]); }
+    catch(ConfigurationException x) { return null; }
+    catch(LinkageError x) { return null; }
+  }
+
+  private static boolean hasConfigConstructor(Class<?> c) {
+    try {
+      c.getConstructor(Config.class);
+      return true;
+    }
+    catch(NoSuchMethodException x) { return false; }
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if(this == o) { return true; }
+    if(!(o instanceof ConfiguredInstantiator)) { return false; }
+    ConfiguredInstantiator that = (ConfiguredInstantiator)o;
+    if(!resolved || !that.resolved) { return false; }
+    if(key == null ? that.key != null : !key.equals(that.key)) { return false; }
+    if(!readsConfig && !that.readsConfig) { return true; }
+    return settings != null && Arrays.equals(settings, that.settings);
+  }
+
+  @Override
+  public int hashCode() { return 31 * (key == null ? 0 : key.hashCode()) + Arrays.hashCode(settings); }
+
   /** In this mode, we are just refecting to another delegated class. This is preferred
    * if you don't have any configuration to do at runtime (i.e. you can make a named class
    * that has all the logic for your KryoInstantiator).
@@ -128,47 +240,157 @@ public class ConfiguredInstantiator extends KryoInstantiator {
    */
   public static void setSerialized(Config conf, Class<? extends KryoInstantiator> reflector, KryoInstantiator ki)
     throws ConfigurationException {
+    setSerialized(conf, reflector, ki, true);
+  }
+
+  /** Same as setSerialized(conf, reflector, ki), but with deflate false the value is
+   * written in the plain format that chill releases before DEFLATED_V1 can read.
+   */
+  public static void setSerialized(Config conf, Class<? extends KryoInstantiator> reflector, KryoInstantiator ki,
+    boolean deflate) throws ConfigurationException {
     KryoInstantiator refki = reflect(reflector, conf);
-    String kistr = serialize(refki.newKryo(), ki);
+    String kistr = serialize(refki.newKryo(), ki, deflate);
     // Verify, that deserialization works:
     KryoInstantiator deser = deserialize(refki.newKryo(), kistr); // ignore the result, just see if it throws
     deser.newKryo(); // just see if we can still create it
     conf.set(KEY, reflector.getName() + ":" + kistr);
   }
 
+  /** Prefix of serialized instantiators written as: the number of serialized bytes
+   * as 4 big-endian bytes followed by the bytes deflated, all in Base64.
+   * Values without it are the Base64 of the serialized bytes.
+   */
+  public static final String DEFLATED_V1 = "!1";
+
   protected static KryoInstantiator deserialize(Kryo k, String base64Value) throws ConfigurationException {
     try {
-      return (KryoInstantiator)k.readClassAndObject(new Input(Base64.decode(base64Value)));
+      return (KryoInstantiator)k.readClassAndObject(new Input(decode(base64Value)));
     }
-    catch(java.io.IOException iox) {
+    catch(IOException iox) {
       throw new ConfigurationException("could not deserialize: " + base64Value, iox);
     }
   }
   protected static String serialize(Kryo k, KryoInstantiator ki) {
+    return serialize(k, ki, true);
+  }
+  /** With deflate, whichever of the DEFLATED_V1 and plain encodings is shorter */
+  protected static String serialize(Kryo k, KryoInstantiator ki, boolean deflate) {
     Output out = new Output(1 << 10, 1 << 19); // 1 MB in config is too much
     k.writeClassAndObject(out, ki);
-    return Base64.encodeBytes(out.toBytes());
+    String plain = Base64.encodeBytes(out.getBuffer(), 0, out.position());
+    if(!deflate) { return plain; }
+    String deflated = deflate(out.getBuffer(), out.position());
+    return deflated != null && deflated.length() < plain.length() ? deflated : plain;
+  }
+
+  // DEFLATED_V1 encoding of bytes[0 until length], or null if it would be longer than length
+  private static String deflate(byte[] bytes, int length) {
+    byte[] packed = new byte[4 + length];
+    packed[0] = (byte)(length >>> 24);
+    packed[1] = (byte)(length >>> 16);
+    packed[2] = (byte)(length >>> 8);
+    packed[3] = (byte)length;
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      deflater.setInput(bytes, 0, length);
+      deflater.finish();
+      int end = 4;
+      while(!deflater.finished() && end < packed.length) {
+        end += deflater.deflate(packed, end, packed.length - end);
+      }
+      return deflater.finished() ? DEFLATED_V1 + Base64.encodeBytes(packed, 0, end) : null;
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  // The serialized bytes in a config value, in either encoding
+  static byte[] decode(String base64Value) throws IOException {
+    if(!base64Value.startsWith(DEFLATED_V1)) { return Base64.decode(base64Value); }
+    byte[] ascii = base64Value.getBytes("US-ASCII");
+    int skip = DEFLATED_V1.length();
+    byte[] packed = Base64.decode(ascii, skip, ascii.length - skip, Base64.DONT_GUNZIP);
+    if(packed.length < 4) { throw new IOException("Truncated deflated instantiator"); }
+    int length = ((packed[0] & 0xff) << 24) | ((packed[1] & 0xff) << 16) | ((packed[2] & 0xff) << 8) | (packed[3] & 0xff);
+    byte[] bytes = new byte[length];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(packed, 4, packed.length - 4);
+      if(inflater.inflate(bytes) != length) { throw new IOException("Truncated deflated instantiator"); }
+    }
+    catch(DataFormatException x) {
+      throw new IOException("Corrupt deflated instantiator", x);
+    }
+    finally {
+      inflater.end();
+    }
+    return bytes;
+  }
+
+  private static volatile int cacheSize = Integer.getInteger(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+  private static final ConcurrentHashMap<String, KryoInstantiator> CACHE =
+    new ConcurrentHashMap<String, KryoInstantiator>();
+  // Cached config values, oldest first, which is the order they are evicted in.
+  // Hits only read CACHE; every change to CACHE and CACHE_ORDER holds this lock, so they agree.
+  private static final ArrayDeque<String> CACHE_ORDER = new ArrayDeque<String>();
+  private static final LongAdder CACHE_HITS = new LongAdder();
+  private static final LongAdder CACHE_MISSES = new LongAdder();
+
+  /** Deserialize the instantiator in base64Value with a Kryo from the reflected
+   * className, unless one was already deserialized for the same config value (key).
+   */
+  private static KryoInstantiator fastDeserialize(Config conf, String className, String key, String base64Value)
+    throws ConfigurationException {
+    KryoInstantiator ki = CACHE.get(key);
+    if(ki != null) {
+      CACHE_HITS.increment();
+      return ki;
+    }
+    CACHE_MISSES.increment();
+    ki = deserialize(reflect(forName(className), conf).newKryo(), base64Value);
+    if(ki == null || cacheSize <= 0) { return ki; }
+    synchronized(CACHE_ORDER) {
+      KryoInstantiator raced = CACHE.putIfAbsent(key, ki);
+      if(raced != null) { return raced; }
+      CACHE_ORDER.add(key);
+      evictOver(cacheSize);
+    }
+    return ki;
   }
 
-  /** Simple class to hold the cached copy of the latest kryo instantiator.
-   * As well as its corresponding base64 encoded data.
+  // Callers hold the CACHE_ORDER lock
+  private static void evictOver(int size) {
+    while(CACHE_ORDER.size() > size) {
+      CACHE.remove(CACHE_ORDER.poll());
+    }
+  }
+
+  /** Keep at most size deserialized instantiators from now on, 0 disables the cache.
+   * Overrides the CACHE_SIZE system property.
    */
-  private static class CachedKryoInstantiator {
-    public final KryoInstantiator kryoInstantiator;
-    public final String base64Value;
-    public CachedKryoInstantiator(KryoInstantiator ki, String bv) {
-      kryoInstantiator = ki;
-      base64Value = bv;
+  public static void setCacheSize(int size) {
+    synchronized(CACHE_ORDER) {
+      cacheSize = Math.max(0, size);
+      evictOver(cacheSize);
     }
   }
 
-  private static CachedKryoInstantiator cachedKryoInstantiator = null;
+  public static int getCacheSize() { return cacheSize; }
+
+  /** Configs whose serialized instantiator was already deserialized */
+  public static long getCacheHits() { return CACHE_HITS.sum(); }
+  /** Configs whose serialized instantiator had to be deserialized */
+  public static long getCacheMisses() { return CACHE_MISSES.sum(); }
 
-  private static synchronized KryoInstantiator fastDeserialize(Kryo k, String base64Value) throws ConfigurationException {
-    if(cachedKryoInstantiator == null || !cachedKryoInstantiator.base64Value.equals(base64Value)) {
-      cachedKryoInstantiator = new CachedKryoInstantiator(deserialize(k, base64Value), base64Value);
+  /** Drop every cached instantiator and zero the hit and miss counts */
+  public static void clearCache() {
+    synchronized(CACHE_ORDER) {
+      CACHE_ORDER.clear();
+      CACHE.clear();
     }
-    return cachedKryoInstantiator.kryoInstantiator;
+    CACHE_HITS.reset();
+    CACHE_MISSES.reset();
   }
 
   /** Java's string split is very expensive due to regexes.
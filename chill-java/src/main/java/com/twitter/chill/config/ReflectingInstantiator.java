@@ -23,10 +23,12 @@ import com.twitter.chill.ReflectingRegistrar;
 import com.twitter.chill.ReflectingDefaultRegistrar;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.ReferenceResolver;
 import com.esotericsoftware.kryo.Serializer;
 import org.objenesis.strategy.InstantiatorStrategy;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.lang.reflect.InvocationTargetException;
 
@@ -38,6 +40,8 @@ public class ReflectingInstantiator extends KryoInstantiator {
   final Class<? extends InstantiatorStrategy> instStratClass;
   final List<IKryoRegistrar> registrations;
   final List<ReflectingDefaultRegistrar> defaultRegistrations;
+  final Class<? extends ReferenceResolver> refResolverClass;
+  final List<Class<?>> refClasses;
 
   public ReflectingInstantiator(Config conf) throws ConfigurationException {
     regRequired = conf.getBoolean(REGISTRATION_REQUIRED, REGISTRATION_REQUIRED_DEFAULT);
@@ -56,12 +60,23 @@ public class ReflectingInstantiator extends KryoInstantiator {
 
       registrations = (List<IKryoRegistrar>)buildRegistrars(conf.get(REGISTRATIONS), false);
       defaultRegistrations = (List<ReflectingDefaultRegistrar>)buildRegistrars(conf.get(DEFAULT_REGISTRATIONS), true);
+      String resolver = conf.get(REFERENCE_RESOLVER);
+      refResolverClass = resolver == null || resolver.isEmpty() ? null :
+        Class.forName(resolver, true, Thread.currentThread().getContextClassLoader()).asSubclass(ReferenceResolver.class);
+      refClasses = new ArrayList<Class<?>>();
+      String classes = conf.get(REFERENCE_CLASSES);
+      if(classes != null && !classes.isEmpty()) {
+        for(String c : classes.split(":")) {
+          refClasses.add(Class.forName(c, true, Thread.currentThread().getContextClassLoader()));
+        }
+      }
       // Make sure we can make a newKryo, this throws a runtime exception if not.
       newKryoWithEx();
     }
     catch(ClassNotFoundException x) { throw new ConfigurationException(x); }
     catch(InstantiationException x) { throw new ConfigurationException(x); }
     catch(IllegalAccessException x) { throw new ConfigurationException(x); }
+    catch(ClassCastException x) { throw new ConfigurationException(x); }
   }
 
   /** Create an instance using the defaults for non-listed params */
@@ -96,6 +111,30 @@ public class ReflectingInstantiator extends KryoInstantiator {
 
     defaultRegistrations = new ArrayList<ReflectingDefaultRegistrar>();
     for(ReflectingDefaultRegistrar rdr: defaults) { defaultRegistrations.add(rdr); }
+    refResolverClass = null;
+    refClasses = new ArrayList<Class<?>>();
+  }
+
+  private ReflectingInstantiator(ReflectingInstantiator that,
+      Class<? extends ReferenceResolver> refResolverClass,
+      List<Class<?>> refClasses) {
+    kryoClass = that.kryoClass;
+    instStratClass = that.instStratClass;
+    regRequired = that.regRequired;
+    skipMissing = that.skipMissing;
+    registrations = that.registrations;
+    defaultRegistrations = that.defaultRegistrations;
+    this.refResolverClass = refResolverClass;
+    this.refClasses = refClasses;
+  }
+
+  /** The same instantiator, but each Kryo tracks references with a new resolverClass.
+   * If tracked classes are given, it is made with a constructor taking a Class[],
+   * as IdentityReferenceResolver has, else with its no-arg constructor.
+   */
+  public ReflectingInstantiator withReferenceResolver(Class<? extends ReferenceResolver> resolverClass,
+      Class<?>... tracked) {
+    return new ReflectingInstantiator(this, resolverClass, new ArrayList<Class<?>>(Arrays.asList(tracked)));
   }
 
   public void set(Config conf) throws ConfigurationException {
@@ -107,6 +146,16 @@ public class ReflectingInstantiator extends KryoInstantiator {
 
     conf.set(REGISTRATIONS, registrarsToString(registrations));
     conf.set(DEFAULT_REGISTRATIONS, registrarsToString(defaultRegistrations));
+    // Empty reads as unset, and unlike null every Config can store it
+    StringBuilder classes = new StringBuilder();
+    if(refResolverClass != null) {
+      for(Class<?> c : refClasses) {
+        if(classes.length() > 0) { classes.append(":"); }
+        classes.append(c.getName());
+      }
+    }
+    conf.set(REFERENCE_RESOLVER, refResolverClass == null ? "" : refResolverClass.getName());
+    conf.set(REFERENCE_CLASSES, classes.toString());
   }
 
   // This one adds expeption annotations that the interface does not have
@@ -120,9 +169,22 @@ public class ReflectingInstantiator extends KryoInstantiator {
     for(IKryoRegistrar dkr: defaultRegistrations) {
       dkr.apply(k);
     }
+    if(refResolverClass != null) { k.setReferenceResolver(newReferenceResolver()); }
     return k;
   }
 
+  private ReferenceResolver newReferenceResolver() throws InstantiationException, IllegalAccessException {
+    try {
+      if(refClasses.isEmpty()) { return refResolverClass.getDeclaredConstructor().newInstance(); }
+      return refResolverClass.getConstructor(Class[].class).newInstance((Object)refClasses.toArray(new Class<?>[0]));
+    }
+    catch(NoSuchMethodException x) {
+      throw new IllegalArgumentException(refResolverClass
+        + (refClasses.isEmpty() ? " has no no-arg constructor" : " cannot take tracked classes"), x);
+    }
+    catch(InvocationTargetException x) { throw new RuntimeException(x.getCause()); }
+  }
+
   @Override
   public Kryo newKryo() {
     try {
@@ -185,11 +247,28 @@ public class ReflectingInstantiator extends KryoInstantiator {
   public static final String REGISTRATION_REQUIRED = prefix + ".registrationrequired";
   public static final boolean REGISTRATION_REQUIRED_DEFAULT = false;
 
+  /**
+   * Name of the ReferenceResolver class each Kryo tracks references with, for example
+   * com.twitter.chill.IdentityReferenceResolver. Setting it turns references on.
+   * If this is empty, Kryo's own setting is left alone.
+   */
+  public static final String REFERENCE_RESOLVER = prefix + ".referenceresolver";
+
+  /**
+   * A colon-separated list of the only classes REFERENCE_RESOLVER should track references for.
+   * If this is empty, it tracks whatever it does by default.
+   */
+  public static final String REFERENCE_CLASSES = prefix + ".referenceclasses";
+
+  /** Every key the Config constructor reads */
+  static final String[] KEYS = { KRYO_CLASS, INSTANTIATOR_STRATEGY_CLASS, REGISTRATIONS, DEFAULT_REGISTRATIONS,
+    SKIP_MISSING, REGISTRATION_REQUIRED, REFERENCE_RESOLVER, REFERENCE_CLASSES };
+
   protected List<? extends IKryoRegistrar> buildRegistrars(String base, boolean isAddDefault)
     throws ConfigurationException {
       List<IKryoRegistrar> builder = new ArrayList<IKryoRegistrar>();
 
-      if (base == null)
+      if (base == null || base.isEmpty())
           return builder;
 
       for (String s: base.split(":")) {
@@ -259,7 +338,9 @@ public class ReflectingInstantiator extends KryoInstantiator {
   public int hashCode() {
     return kryoClass.hashCode() ^
       registrations.hashCode() ^
-      defaultRegistrations.hashCode();
+      defaultRegistrations.hashCode() ^
+      (refResolverClass == null ? 0 : refResolverClass.hashCode()) ^
+      refClasses.hashCode();
   }
 
   @Override
@@ -274,7 +355,9 @@ public class ReflectingInstantiator extends KryoInstantiator {
         kryoClass.equals(thatri.kryoClass) &&
         instStratClass.equals(thatri.instStratClass) &&
         registrations.equals(thatri.registrations) &&
-        defaultRegistrations.equals(thatri.defaultRegistrations);
+        defaultRegistrations.equals(thatri.defaultRegistrations) &&
+        (refResolverClass == null ? thatri.refResolverClass == null : refResolverClass.equals(thatri.refResolverClass)) &&
+        refClasses.equals(thatri.refClasses);
     }
     else {
       return false;
@@ -17,6 +17,7 @@
 package com.twitter.chill.java;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.lang.reflect.Array;
@@ -40,7 +41,7 @@ import com.esotericsoftware.kryo.io.Output;
  *
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
-public class ArraysAsListSerializer extends Serializer<List<?>> {
+public class ArraysAsListSerializer extends Serializer<List<?>> implements ShareableSerializer {
 
     private static final Map<Class<?>, Class<?>> primitives = new HashMap<Class<?>, Class<?>>(8, 1.0F);
 
@@ -59,7 +60,7 @@ public class ArraysAsListSerializer extends Serializer<List<?>> {
       return new SingleRegistrar(Arrays.asList("").getClass(), new ArraysAsListSerializer());
     }
 
-    private Field _arrayField;
+    private final Field _arrayField;
 
     public ArraysAsListSerializer() {
         try {
@@ -104,6 +105,22 @@ public class ArraysAsListSerializer extends Serializer<List<?>> {
         }
     }
     
+    @Override
+    public List<?> copy(final Kryo kryo, final List<?> original) {
+        try {
+            final Object[] array = (Object[]) _arrayField.get(original);
+            final Object[] copy = (Object[]) Array.newInstance(array.getClass().getComponentType(), array.length);
+            for (int i = 0; i < array.length; i++) {
+                copy[i] = kryo.copy(array[i]);
+            }
+            return Arrays.asList(copy);
+        } catch (final RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static Class<?> getBoxedClass(final Class<?> c) {
         if (c.isPrimitive()) {
             Class<?> x;
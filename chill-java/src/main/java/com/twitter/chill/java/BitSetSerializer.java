@@ -23,6 +23,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.io.Serializable;
@@ -32,7 +33,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.BitSet;
 
-public class BitSetSerializer extends Serializer<BitSet> implements Serializable {
+public class BitSetSerializer extends Serializer<BitSet> implements Serializable, ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(BitSet.class, new BitSetSerializer());
@@ -80,6 +81,11 @@ public class BitSetSerializer extends Serializer<BitSet> implements Serializable
         }
     }
 
+    @Override
+    public BitSet copy(Kryo kryo, BitSet original) {
+        return (BitSet) original.clone();
+    }
+
     @Override
     public BitSet read(Kryo kryo, Input input, Class<BitSet> bitSetClass) {
         int len = input.readInt(true);
@@ -22,16 +22,21 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.net.InetSocketAddress;
 
-public class InetSocketAddressSerializer extends Serializer<InetSocketAddress> {
+public class InetSocketAddressSerializer extends Serializer<InetSocketAddress> implements ShareableSerializer {
 
   static public IKryoRegistrar registrar() {
     return new SingleRegistrar(InetSocketAddress.class, new InetSocketAddressSerializer());
   }
 
+  public InetSocketAddressSerializer() {
+    setImmutable(true);
+  }
+
   @Override
   public void write(Kryo kryo, Output output, InetSocketAddress obj) {
     output.writeString(obj.getHostName());
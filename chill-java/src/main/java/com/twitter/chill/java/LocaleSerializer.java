@@ -23,6 +23,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.util.Locale;
@@ -30,8 +31,12 @@ import java.util.Locale;
 /** The java serializer uses an cache of allocated instances so
  * it is probably a bit hard to beat, so why bother
  */
-public class LocaleSerializer extends JavaSerializer {
+public class LocaleSerializer extends JavaSerializer implements ShareableSerializer {
    static public IKryoRegistrar registrar() {
       return new SingleRegistrar(Locale.class, new LocaleSerializer());
     }
+
+   public LocaleSerializer() {
+      setImmutable(true);
+   }
 }
@@ -17,6 +17,7 @@ limitations under the License.
 package com.twitter.chill.java;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -28,8 +29,8 @@ import java.lang.reflect.Field;
 import java.util.PriorityQueue;
 import java.util.Comparator;
 
-class PriorityQueueSerializer extends Serializer<PriorityQueue<?>> {
-  private Field compField;
+class PriorityQueueSerializer extends Serializer<PriorityQueue<?>> implements ShareableSerializer {
+  private final Field compField;
 
   static public IKryoRegistrar registrar() {
       return new SingleRegistrar(PriorityQueue.class, new PriorityQueueSerializer());
@@ -80,4 +81,14 @@ class PriorityQueueSerializer extends Serializer<PriorityQueue<?>> {
     }
     return result;
   }
+  @Override
+  @SuppressWarnings("unchecked")
+  public PriorityQueue<?> copy(Kryo k, PriorityQueue<?> q) {
+    PriorityQueue<Object> result =
+      new PriorityQueue<Object>(Math.max(q.size(), 1), (Comparator<Object>)getComparator(q));
+    for(Object a : q) {
+      result.add(k.copy(a));
+    }
+    return result;
+  }
 }
@@ -22,16 +22,21 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.util.regex.Pattern;
 
-public class RegexSerializer extends Serializer<Pattern> {
+public class RegexSerializer extends Serializer<Pattern> implements ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(Pattern.class, new RegexSerializer());
     }
 
+    public RegexSerializer() {
+      setImmutable(true);
+    }
+
     @Override
     public void write(Kryo kryo, Output output, Pattern pattern) {
         output.writeString(pattern.pattern());
@@ -16,9 +16,11 @@ limitations under the License.
 
 package com.twitter.chill.java;
 
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.text.SimpleDateFormat;
@@ -26,8 +28,13 @@ import java.text.SimpleDateFormat;
 /** This class fails with the Fields serializer.
  * If it is a perf bottleneck, we could write a Kryo serializer
  */
-public class SimpleDateFormatSerializer extends JavaSerializer {
+public class SimpleDateFormatSerializer extends JavaSerializer implements ShareableSerializer {
    static public IKryoRegistrar registrar() {
       return new SingleRegistrar(SimpleDateFormat.class, new SimpleDateFormatSerializer());
     }
+
+   @Override
+   public Object copy(Kryo kryo, Object original) {
+      return ((SimpleDateFormat)original).clone();
+   }
 }
@@ -22,11 +22,12 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.sql.Date;
 
-public class SqlDateSerializer extends Serializer<Date> {
+public class SqlDateSerializer extends Serializer<Date> implements ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(Date.class, new SqlDateSerializer());
@@ -41,4 +42,9 @@ public class SqlDateSerializer extends Serializer<Date> {
     public Date read(Kryo kryo, Input input, Class<Date> dateClass) {
         return new Date(input.readLong(true));
     }
+
+    @Override
+    public Date copy(Kryo kryo, Date original) {
+        return new Date(original.getTime());
+    }
 }
@@ -22,11 +22,12 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.sql.Time;
 
-public class SqlTimeSerializer extends Serializer<Time> {
+public class SqlTimeSerializer extends Serializer<Time> implements ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(Time.class, new SqlTimeSerializer());
@@ -41,4 +42,9 @@ public class SqlTimeSerializer extends Serializer<Time> {
     public Time read(Kryo kryo, Input input, Class<Time> timeClass) {
         return new Time(input.readLong(true));
     }
+
+    @Override
+    public Time copy(Kryo kryo, Time original) {
+        return new Time(original.getTime());
+    }
 }
@@ -22,11 +22,12 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.sql.Timestamp;
 
-public class TimestampSerializer extends Serializer<Timestamp> {
+public class TimestampSerializer extends Serializer<Timestamp> implements ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(Timestamp.class, new TimestampSerializer());
@@ -44,4 +45,11 @@ public class TimestampSerializer extends Serializer<Timestamp> {
         ts.setNanos(input.readInt(true));
         return ts;
     }
+
+    @Override
+    public Timestamp copy(Kryo kryo, Timestamp original) {
+        Timestamp ts = new Timestamp(original.getTime());
+        ts.setNanos(original.getNanos());
+        return ts;
+    }
 }
@@ -22,16 +22,21 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.net.URI;
 
-public class URISerializer extends Serializer<java.net.URI> {
+public class URISerializer extends Serializer<java.net.URI> implements ShareableSerializer {
 
     static public IKryoRegistrar registrar() {
       return new SingleRegistrar(URI.class, new URISerializer());
     }
 
+    public URISerializer() {
+      setImmutable(true);
+    }
+
     @Override
     public void write(Kryo kryo, Output output, URI uri) {
         output.writeString(uri.toString());
@@ -22,16 +22,21 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import com.twitter.chill.IKryoRegistrar;
+import com.twitter.chill.ShareableSerializer;
 import com.twitter.chill.SingleRegistrar;
 
 import java.util.UUID;
 
-public class UUIDSerializer extends Serializer<UUID> {
+public class UUIDSerializer extends Serializer<UUID> implements ShareableSerializer {
 
    static public IKryoRegistrar registrar() {
       return new SingleRegistrar(UUID.class, new UUIDSerializer());
     }
 
+    public UUIDSerializer() {
+      setImmutable(true);
+    }
+
     @Override
     public void write(Kryo kryo, Output output, UUID uuid) {
         output.writeLong(uuid.getMostSignificantBits(), false);
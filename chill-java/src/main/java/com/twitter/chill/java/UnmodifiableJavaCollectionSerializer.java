@@ -22,6 +22,8 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import com.twitter.chill.ShareableSerializer;
+
 import java.lang.reflect.Field;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,7 +37,7 @@ import java.util.Collections;
  *
  * @author <a href="mailto:alex@chermenin.ru">Alex Chermenin</a>
  */
-abstract class UnmodifiableJavaCollectionSerializer<T> extends Serializer<T> {
+abstract class UnmodifiableJavaCollectionSerializer<T> extends Serializer<T> implements ShareableSerializer {
   
   abstract protected T newInstance(T o);
   
@@ -77,4 +79,19 @@ abstract class UnmodifiableJavaCollectionSerializer<T> extends Serializer<T> {
       throw new RuntimeException(e);
     }
   }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T copy(Kryo kryo, T original) {
+    try {
+      T u = (T) innerField.get(original);
+      T uCopy = kryo.copy(u);
+      // Only share the view if nothing under it needed copying
+      return uCopy == u ? original : newInstance(uCopy);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
 }
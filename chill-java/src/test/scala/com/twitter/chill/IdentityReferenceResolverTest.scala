@@ -0,0 +1,82 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill
+
+import _root_.java.util.{ArrayList => JArrayList, HashMap => JHashMap}
+
+import com.esotericsoftware.kryo.Kryo
+import com.esotericsoftware.kryo.util.MapReferenceResolver
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class IdentityReferenceResolverTest extends AnyWordSpec with Matchers {
+  def pool(inst: KryoInstantiator): KryoPool = KryoPool.withByteArrayOutputStream(1, inst)
+
+  val mapRefs: KryoInstantiator = new KryoInstantiator {
+    override def newKryo = {
+      val k = new Kryo
+      k.setReferenceResolver(new MapReferenceResolver)
+      k
+    }
+  }
+
+  // n lists, each holding the same shared map, followed by the list itself
+  def graph(n: Int): JArrayList[AnyRef] = {
+    val shared = new JHashMap[String, String]
+    shared.put("key", "value")
+    val outer = new JArrayList[AnyRef]
+    (0 until n).foreach { i =>
+      val inner = new JArrayList[AnyRef]
+      inner.add("item" + i)
+      inner.add(shared)
+      outer.add(inner)
+    }
+    outer.add(outer)
+    outer
+  }
+
+  "An IdentityReferenceResolver" should {
+    "write the same bytes as MapReferenceResolver" in {
+      val g = graph(5000)
+      pool(new KryoInstantiator().withIdentityReferences()).toBytesWithClass(g) should equal(
+        pool(mapRefs).toBytesWithClass(g)
+      )
+    }
+    "keep shared and cyclic references across many messages" in {
+      val p = pool(new KryoInstantiator().withIdentityReferences())
+      (1 to 3).foreach { _ =>
+        Seq(1, 3000, 10).foreach { n =>
+          val read = p.fromBytes(p.toBytesWithClass(graph(n))).asInstanceOf[JArrayList[AnyRef]]
+          read.size should equal(n + 1)
+          read.get(n) should be theSameInstanceAs read
+          val maps = (0 until n).map(i => read.get(i).asInstanceOf[JArrayList[AnyRef]].get(1))
+          maps.foreach(_ should be theSameInstanceAs maps.head)
+        }
+      }
+    }
+    "only reference the tracked classes" in {
+      val tracked = pool(new KryoInstantiator().withIdentityReferences(classOf[JHashMap[_, _]]))
+      val g = graph(100)
+      g.remove(100) // no cycle through the untracked list
+      val bytes = tracked.toBytesWithClass(g)
+      bytes.length should be < pool(mapRefs).toBytesWithClass(g).length
+      val read = tracked.fromBytes(bytes).asInstanceOf[JArrayList[JArrayList[AnyRef]]]
+      read.get(0).get(1) should be theSameInstanceAs read.get(99).get(1)
+      read should equal(g)
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill
+
+import _root_.java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException}
+import _root_.java.nio.channels.Channels
+import _root_.java.util.concurrent.TimeUnit
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class KryoRecordStreamTest extends AnyWordSpec with Matchers {
+  def pool: KryoPool = KryoPool.withByteArrayOutputStream(1, new KryoInstantiator)
+
+  "KryoRecordWriter and KryoRecordReader" should {
+    "round trip records with their classes" in {
+      val records: Seq[AnyRef] = Seq("a", Integer.valueOf(1), "x" * 10000, new _root_.java.util.ArrayList[String], "")
+      val bytes = new ByteArrayOutputStream
+      val writer = new KryoRecordWriter(pool, bytes, 128)
+      records.foreach(writer.write)
+      writer.close()
+
+      val p = KryoPool.boundedWithByteArrayOutputStream(1, new KryoInstantiator)
+      val reader = KryoRecordReader.withClass(p, new ByteArrayInputStream(bytes.toByteArray))
+      val read = Iterator.continually(reader).takeWhile(_.hasNext).map(_.next).toList
+      read should equal(records.toList)
+      reader.hasNext should equal(false)
+      reader.close()
+      // The borrowed state went back to the pool
+      p.borrow(1, TimeUnit.SECONDS) should not be (null)
+    }
+    "round trip records of one class over channels" in {
+      val bytes = new ByteArrayOutputStream
+      val writer = new KryoRecordWriter(pool, Channels.newChannel(bytes))
+      (0 until 1000).foreach(i => writer.writeWithoutClass("record" + i))
+      writer.flush()
+      val reader =
+        KryoRecordReader.of(pool, Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray)), classOf[String])
+      var count = 0
+      while (reader.hasNext) {
+        reader.next() should equal("record" + count)
+        count += 1
+      }
+      count should equal(1000)
+      writer.close()
+    }
+    "only write to the stream when the buffer fills or on flush" in {
+      val bytes = new ByteArrayOutputStream
+      val writer = new KryoRecordWriter(pool, bytes, 1024)
+      writer.write("small")
+      bytes.size should equal(0)
+      writer.flush()
+      bytes.size should be > 0
+      writer.close()
+      an[IOException] should be thrownBy writer.write("closed")
+    }
+    "read nothing from an empty stream" in {
+      val reader = KryoRecordReader.withClass(pool, new ByteArrayInputStream(new Array[Byte](0)))
+      reader.hasNext should equal(false)
+      a[NoSuchElementException] should be thrownBy reader.next()
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill
+
+import _root_.java.util.Collections
+import _root_.java.util.concurrent.{Callable, Executors, ForkJoinPool, TimeUnit}
+import _root_.java.util.concurrent.atomic.AtomicInteger
+
+import com.esotericsoftware.kryo.Kryo
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ResourcePoolTest extends AnyWordSpec with Matchers {
+  class CountingPool(store: ResourceStore[AnyRef], maxBorrowed: Int) extends ResourcePool[AnyRef](store, maxBorrowed) {
+    def this(store: ResourceStore[AnyRef]) = this(store, 0)
+    val created = new AtomicInteger
+    protected def newInstance(): AnyRef = { created.incrementAndGet; new AnyRef }
+  }
+
+  "A ThreadAffineStore" should {
+    "hand back what was released to the same thread" in {
+      val pool = new CountingPool(new ThreadAffineStore[AnyRef](4))
+      val a = pool.borrow()
+      pool.release(a)
+      pool.borrow() should be theSameInstanceAs (a)
+      pool.created.get should equal(1)
+    }
+    "hand instances released on one thread to another" in {
+      // 8 slots and overflow together, so most releases land outside the borrower's home slots
+      val store = new ThreadAffineStore[AnyRef](16)
+      val items = (0 until 16).map(_ => new AnyRef)
+      val exec = Executors.newSingleThreadExecutor()
+      val offered = exec.submit(new Callable[Seq[Boolean]] {
+        def call(): Seq[Boolean] = items.map(store.offer(_))
+      })
+      offered.get should equal(items.map(_ => true))
+      exec.shutdown()
+      val pool = new CountingPool(store)
+      val borrowed = (0 until 16).map(_ => pool.borrow())
+      borrowed.toSet should equal(items.toSet)
+      pool.created.get should equal(0)
+      store.poll() should equal(null)
+    }
+    "keep at most size items" in {
+      val store = new ThreadAffineStore[AnyRef](5)
+      (0 until 5).foreach(_ => store.offer(new AnyRef) should equal(true))
+      store.offer(new AnyRef) should equal(false)
+      store.poll() should not equal (null)
+      store.offer(new AnyRef) should equal(true)
+    }
+    "serve a KryoPool from many threads" in {
+      val pool = KryoPool.withByteArrayOutputStream(new ThreadAffineStore[SerDeState](4), new KryoInstantiator)
+      val exec = Executors.newFixedThreadPool(16)
+      val futures = (0 until 1000).map { i =>
+        exec.submit(new Callable[AnyRef] {
+          def call(): AnyRef = pool.fromBytes(pool.toBytesWithClass("hello" + i))
+        })
+      }
+      futures.zipWithIndex.foreach { case (f, i) => f.get should equal("hello" + i) }
+      exec.shutdown()
+    }
+  }
+
+  "A bounded ResourcePool" should {
+    "never create more than the bound" in {
+      val pool = new CountingPool(ResourcePool.queueStore[AnyRef](2), 2)
+      val exec = Executors.newFixedThreadPool(8)
+      val futures = (0 until 200).map { _ =>
+        exec.submit(new Runnable {
+          def run(): Unit = {
+            val item = pool.borrow()
+            Thread.sleep(1)
+            pool.release(item)
+          }
+        })
+      }
+      futures.foreach(_.get)
+      exec.shutdown()
+      pool.created.get should be <= 2
+    }
+    "time out when everything is borrowed" in {
+      val pool = new CountingPool(ResourcePool.queueStore[AnyRef](1), 1)
+      val held = pool.borrow()
+      pool.borrow(10, TimeUnit.MILLISECONDS) should equal(null)
+      pool.release(held)
+      pool.borrow(10, TimeUnit.MILLISECONDS) should be theSameInstanceAs (held)
+    }
+    "wake up a waiting borrower on release" in {
+      val pool = KryoPool.boundedWithBuffer(1, new KryoInstantiator, 16, -1)
+      val held = pool.borrow()
+      val exec = Executors.newSingleThreadExecutor
+      val waiting = exec.submit(new Callable[AnyRef] {
+        def call(): AnyRef = pool.fromBytes(pool.toBytesWithClass("waited"))
+      })
+      Thread.sleep(20)
+      waiting.isDone should equal(false)
+      pool.release(held)
+      waiting.get(10, TimeUnit.SECONDS) should equal("waited")
+      exec.shutdown()
+    }
+  }
+
+  "PoolStats" should {
+    "count hits, misses, discards and output size" in {
+      val pool = KryoPool.withBuffer(1, new KryoInstantiator, 16, -1)
+      val stats = PoolStats.named("ResourcePoolTest")
+      stats.reset()
+      pool.setInstrumentation(stats)
+
+      val a = pool.borrow()
+      val b = pool.borrow()
+      a.writeClassAndObject("x" * 100)
+      pool.release(a)
+      pool.release(b) // only one fits
+      pool.fromBytes(pool.toBytesWithClass("hello")) should equal("hello")
+
+      stats.getMisses should equal(2)
+      stats.getHits should equal(2)
+      stats.getDiscarded should equal(1)
+      stats.getOutputHighWater should be >= 100L
+      PoolStats.registry.get("ResourcePoolTest") should be theSameInstanceAs (stats)
+    }
+  }
+
+  "KryoPool.prewarm" should {
+    "fill the pool so the first borrows are hits" in {
+      val pool = KryoPool.withByteArrayOutputStream(4, new KryoInstantiator)
+      val stats = PoolStats.named("ResourcePoolTest.prewarm")
+      stats.reset()
+      pool.setInstrumentation(stats)
+      pool.prewarm(6, _root_.java.util.Arrays.asList("sample", Integer.valueOf(3))) should equal(4)
+
+      val borrowed = (0 until 4).map(_ => pool.borrow())
+      stats.getHits should equal(4)
+      stats.getMisses should equal(0)
+      borrowed.foreach(pool.release)
+      pool.fromBytes(pool.toBytesWithClass("after")) should equal("after")
+    }
+    "not count against the bound" in {
+      val pool = KryoPool.boundedWithBuffer(2, new KryoInstantiator, 16, -1)
+      pool.prewarm(2) should equal(2)
+      val a = pool.borrow(1, TimeUnit.SECONDS)
+      val b = pool.borrow(1, TimeUnit.SECONDS)
+      a should not be (null)
+      b should not be (null)
+      pool.borrow(10, TimeUnit.MILLISECONDS) should be(null)
+    }
+    "build instances with the caller's context class loader" in {
+      val loader = new _root_.java.net.URLClassLoader(Array.empty, getClass.getClassLoader)
+      val seen = new _root_.java.util.concurrent.ConcurrentLinkedQueue[ClassLoader]
+      val pool = KryoPool.withByteArrayOutputStream(
+        4,
+        new KryoInstantiator {
+          override def newKryo(): Kryo = {
+            seen.add(Thread.currentThread.getContextClassLoader)
+            super.newKryo()
+          }
+        }
+      )
+      val thread = Thread.currentThread
+      val prev = thread.getContextClassLoader
+      thread.setContextClassLoader(loader)
+      try pool.prewarm(4, Collections.emptyList(), new ForkJoinPool(2)) should equal(4)
+      finally thread.setContextClassLoader(prev)
+      seen.size should equal(4)
+      seen.toArray.foreach(_ should be theSameInstanceAs (loader))
+    }
+  }
+
+  "A KryoPool with output retention" should {
+    def bigThenSmall(pool: KryoPool, capacity: SerDeState => Int): Seq[Int] = {
+      val st = pool.borrow()
+      st.writeObject(new Array[Byte](1 << 20))
+      pool.release(st)
+      (0 until 100).map { _ =>
+        val s = pool.borrow()
+        s.writeObject(new Array[Byte](100))
+        pool.release(s)
+        capacity(s)
+      }
+    }
+    "shrink a buffer back after an outlier" in {
+      val pool = KryoPool.withBuffer(1, new KryoInstantiator, 16, -1)
+      pool.setOutputRetention(1024)
+      val caps = bigThenSmall(pool, _.output.getBuffer.length)
+      caps.head should be > (1 << 19)
+      caps.last should be <= 2048
+    }
+    "leave buffers alone when disabled" in {
+      val pool = KryoPool.withBuffer(1, new KryoInstantiator, 16, -1)
+      bigThenSmall(pool, _.output.getBuffer.length).last should be > (1 << 19)
+    }
+    "shrink the growable output of withByteArrayOutputStream" in {
+      val pool = KryoPool.withByteArrayOutputStream(1, new KryoInstantiator)
+      pool.setOutputRetention(1024)
+      val caps = bigThenSmall(pool, _.output.getBuffer.length)
+      caps.head should be > (1 << 19)
+      caps.last should be <= 4096
+      pool.fromBytes(pool.toBytesWithClass("still works")) should equal("still works")
+    }
+  }
+
+  "A SizePredictor" should {
+    "jump up to larger sizes and decay toward smaller ones" in {
+      val p = new SizePredictor
+      p.estimate(classOf[String]) should equal(0)
+      p.record(classOf[String], 800)
+      p.estimate("any") should equal(800)
+      p.record(classOf[String], 0)
+      p.estimate(classOf[String]) should equal(700)
+      p.record(classOf[String], 1000)
+      p.estimate(classOf[String]) should equal(1000)
+      p.estimate(classOf[Integer]) should equal(0)
+    }
+  }
+
+  "KryoPool.withAdaptiveBuffer" should {
+    "size the output for the class before writing it" in {
+      val pool = KryoPool.withAdaptiveBuffer(1, new KryoInstantiator, -1)
+      val big = new Array[Byte](100000)
+      pool.fromBytes(pool.toBytesWithClass(big)) should equal(big)
+      val predicted = pool.getSizePredictor.estimate(big)
+      predicted should equal(pool.toBytesWithClass(big).length)
+
+      // Retention shrinks the output after the outlier; writing it again takes one allocation
+      (0 until 10).foreach(_ => pool.toBytesWithClass("small"))
+      val st = pool.borrow()
+      st.output.getBuffer.length should be < predicted
+      st.writeClassAndObject(big)
+      st.output.getBuffer.length should equal(predicted)
+      pool.release(st)
+    }
+    "never size past the max" in {
+      val pool = KryoPool.withAdaptiveBuffer(1, new KryoInstantiator, 1024)
+      pool.getSizePredictor.record(classOf[String], 1 << 20)
+      pool.fromBytes(pool.toBytesWithClass("fits")) should equal("fits")
+    }
+  }
+}
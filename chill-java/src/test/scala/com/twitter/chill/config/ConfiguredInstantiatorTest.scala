@@ -21,11 +21,29 @@ import org.scalacheck.Properties
 
 import com.twitter.chill._
 import com.esotericsoftware.kryo.Kryo
+import org.objenesis.strategy.StdInstantiatorStrategy
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
 class TestInst extends KryoInstantiator { override def newKryo = new Kryo }
 class TestInstTwo extends KryoInstantiator { override def newKryo = new Kryo }
+class RegistrarInst(registrar: IKryoRegistrar) extends KryoInstantiator {
+  override def newKryo = {
+    val k = new Kryo
+    registrar(k)
+    k
+  }
+}
+class ConfigReadingInst(conf: Config) extends KryoInstantiator {
+  val setting = conf.get("configreadinginst.setting")
+}
+class StdInst extends KryoInstantiator {
+  override def newKryo = {
+    val k = new Kryo
+    k.setInstantiatorStrategy(new StdInstantiatorStrategy)
+    k
+  }
+}
 
 class ReflectingInstantiatorTest extends AnyWordSpec with Matchers {
   "A ConfiguredInstantiator" should {
@@ -51,6 +69,198 @@ class ReflectingInstantiatorTest extends AnyWordSpec with Matchers {
       cci3.getDelegate.getClass should equal(classOf[TestInstTwo])
       (cci3.getDelegate should not).equal(cci2.getDelegate)
     }
+    "cache several serialized instantiators, up to the cache size" in {
+      val one = new JavaMapConfig
+      ConfiguredInstantiator.setSerialized(one, new TestInst)
+      val two = new JavaMapConfig
+      ConfiguredInstantiator.setSerialized(two, new TestInstTwo)
+      ConfiguredInstantiator.clearCache()
+      try {
+        val first = new ConfiguredInstantiator(one).getDelegate
+        new ConfiguredInstantiator(two).getDelegate.getClass should equal(classOf[TestInstTwo])
+        // Alternating configs does not evict
+        new ConfiguredInstantiator(one).getDelegate should be theSameInstanceAs first
+        new ConfiguredInstantiator(two).newKryo
+        ConfiguredInstantiator.getCacheMisses should equal(2)
+        ConfiguredInstantiator.getCacheHits should equal(2)
+
+        ConfiguredInstantiator.setCacheSize(1)
+        new ConfiguredInstantiator(two).newKryo
+        (new ConfiguredInstantiator(one).getDelegate should not).be(theSameInstanceAs(first))
+        ConfiguredInstantiator.getCacheMisses should equal(3)
+      } finally {
+        ConfiguredInstantiator.setCacheSize(ConfiguredInstantiator.DEFAULT_CACHE_SIZE)
+        ConfiguredInstantiator.clearCache()
+      }
+    }
+    "keep the cache and its eviction order in step when cleared during misses" in {
+      val one = new JavaMapConfig
+      ConfiguredInstantiator.setSerialized(one, new TestInst)
+      val two = new JavaMapConfig
+      ConfiguredInstantiator.setSerialized(two, new TestInstTwo)
+      ConfiguredInstantiator.clearCache()
+      try {
+        val threads = (1 to 4).map { _ =>
+          new Thread(new Runnable {
+            def run(): Unit = (1 to 200).foreach(_ => new ConfiguredInstantiator(one).newKryo)
+          })
+        }
+        threads.foreach(_.start())
+        while (threads.exists(_.isAlive)) ConfiguredInstantiator.clearCache()
+        threads.foreach(_.join())
+        // A config queued twice would evict itself while still cached
+        ConfiguredInstantiator.setCacheSize(2)
+        new ConfiguredInstantiator(one).newKryo
+        new ConfiguredInstantiator(two).newKryo
+        new ConfiguredInstantiator(one).newKryo
+        val misses = ConfiguredInstantiator.getCacheMisses
+        new ConfiguredInstantiator(two).newKryo
+        new ConfiguredInstantiator(one).newKryo
+        ConfiguredInstantiator.getCacheMisses should equal(misses)
+      } finally {
+        ConfiguredInstantiator.setCacheSize(ConfiguredInstantiator.DEFAULT_CACHE_SIZE)
+        ConfiguredInstantiator.clearCache()
+      }
+    }
+    "deflate large serialized instantiators and still read the plain format" in {
+      val classes = Seq(
+        classOf[_root_.java.util.ArrayList[_]],
+        classOf[_root_.java.util.HashMap[_, _]],
+        classOf[_root_.java.util.TreeMap[_, _]],
+        classOf[_root_.java.util.LinkedList[_]],
+        classOf[_root_.java.util.HashSet[_]],
+        classOf[_root_.java.util.concurrent.ConcurrentHashMap[_, _]],
+        classOf[_root_.java.math.BigDecimal],
+        classOf[_root_.java.math.BigInteger]
+      )
+      val registrars = new _root_.java.util.ArrayList[IKryoRegistrar]
+      classes.foreach(c => registrars.add(new ClassRegistrar(c)))
+      val ki = new RegistrarInst(new _root_.com.twitter.chill.java.IterableRegistrar(registrars))
+      def value(deflate: Boolean): String = {
+        val conf = new JavaMapConfig
+        ConfiguredInstantiator.setSerialized(conf, classOf[StdInst], ki, deflate)
+        ConfiguredInstantiator.fastSplitKey(conf.get(ConfiguredInstantiator.KEY))(1)
+      }
+      val deflated = value(true)
+      val plain = value(false)
+      deflated should startWith(ConfiguredInstantiator.DEFLATED_V1)
+      deflated.length should be < plain.length
+      ConfiguredInstantiator.decode(deflated) should equal(ConfiguredInstantiator.decode(plain))
+
+      ConfiguredInstantiator.clearCache()
+      Seq(deflated, plain).foreach { v =>
+        val conf = new JavaMapConfig
+        conf.set(ConfiguredInstantiator.KEY, classOf[StdInst].getName + ":" + v)
+        val k = new ConfiguredInstantiator(conf).newKryo
+        classes.foreach(c => k.getRegistration(c) should not be null)
+      }
+      ConfiguredInstantiator.clearCache()
+    }
+    "keep tiny serialized instantiators plain" in {
+      val conf = new JavaMapConfig
+      ConfiguredInstantiator.setSerialized(conf, new TestInst)
+      (conf.get(ConfiguredInstantiator.KEY) should not).include(ConfiguredInstantiator.DEFLATED_V1)
+    }
+    "build the delegate lazily and compare by config" in {
+      val conf = new JavaMapConfig
+      conf.set(ConfiguredInstantiator.KEY, "com.example.Missing")
+      // Nothing is loaded until the delegate is needed
+      val missing = new ConfiguredInstantiator(conf)
+      an[RuntimeException] should be thrownBy missing.newKryo
+      an[ConfigurationException] should be thrownBy {
+        conf.set(ConfiguredInstantiator.KEY, "a:b:c")
+        new ConfiguredInstantiator(conf)
+      }
+
+      ConfiguredInstantiator.setReflect(conf, classOf[TestInst])
+      val a = new ConfiguredInstantiator(conf)
+      val b = new ConfiguredInstantiator(conf)
+      a should equal(b)
+      a.hashCode should equal(b.hashCode)
+      ConfiguredInstantiator.setReflect(conf, classOf[TestInstTwo])
+      (new ConfiguredInstantiator(conf) should not).equal(a)
+      a.getDelegate.getClass should equal(classOf[TestInst])
+      val empty = new ConfiguredInstantiator(new JavaMapConfig)
+      empty should equal(new ConfiguredInstantiator(new JavaMapConfig))
+    }
+    "compare reflecting instantiators by their settings, without building them" in {
+      val conf = new JavaMapConfig
+      ConfiguredInstantiator.setReflect(conf, classOf[ReflectingInstantiator])
+      conf.set(ReflectingInstantiator.KRYO_CLASS, "com.example.MissingKryo")
+      val a = new ConfiguredInstantiator(conf)
+      a should equal(new ConfiguredInstantiator(conf))
+      conf.set(ReflectingInstantiator.REGISTRATION_REQUIRED, "true")
+      (new ConfiguredInstantiator(conf) should not).equal(a)
+      an[RuntimeException] should be thrownBy a.newKryo
+    }
+    "build instantiators that read other config right away" in {
+      val conf = new JavaMapConfig
+      ConfiguredInstantiator.setReflect(conf, classOf[ConfigReadingInst])
+      conf.set("configreadinginst.setting", "one")
+      val a = new ConfiguredInstantiator(conf)
+      conf.set("configreadinginst.setting", "two")
+      a.getDelegate.asInstanceOf[ConfigReadingInst].setting should equal("one")
+      (new ConfiguredInstantiator(conf) should not).equal(a)
+    }
+    "not build a class that takes a Config if it could not be loaded when configured" in {
+      def unresolved(c: Class[_]): ConfiguredInstantiator = {
+        val conf = new JavaMapConfig
+        ConfiguredInstantiator.setReflect(conf, c.asInstanceOf[Class[KryoInstantiator]])
+        val thread = Thread.currentThread
+        val loader = thread.getContextClassLoader
+        thread.setContextClassLoader(new _root_.java.net.URLClassLoader(Array.empty, null))
+        try new ConfiguredInstantiator(conf)
+        finally thread.setContextClassLoader(loader)
+      }
+      val reading = unresolved(classOf[ConfigReadingInst])
+      val thrown = the[RuntimeException] thrownBy reading.newKryo
+      thrown.getCause shouldBe a[ConfigurationException]
+      (unresolved(classOf[TestInst]) should not).equal(unresolved(classOf[TestInst]))
+      unresolved(classOf[TestInst]).getDelegate.getClass should equal(classOf[TestInst])
+    }
+    "rebuild the delegate after being serialized unbuilt" in {
+      val conf = new JavaMapConfig
+      ConfiguredInstantiator.setReflect(conf, classOf[ReflectingInstantiator])
+      conf.set(ReflectingInstantiator.REGISTRATION_REQUIRED, "true")
+      val ci = new ConfiguredInstantiator(conf)
+      val k = new KryoInstantiator().setInstantiatorStrategy(new StdInstantiatorStrategy).newKryo
+      val out = new _root_.com.esotericsoftware.kryo.io.Output(1 << 10, -1)
+      k.writeClassAndObject(out, ci)
+      val copy = k.readClassAndObject(new _root_.com.esotericsoftware.kryo.io.Input(out.toBytes))
+      copy should equal(ci)
+      copy.asInstanceOf[ConfiguredInstantiator].newKryo.isRegistrationRequired should equal(true)
+    }
+    "configure a reference resolver on a reflecting instantiator" in {
+      val ri = new ReflectingInstantiator(
+        _root_.java.util.Collections.emptyList[ClassRegistrar[_]],
+        _root_.java.util.Collections.emptyList[ReflectingRegistrar[_]],
+        _root_.java.util.Collections.emptyList[ReflectingDefaultRegistrar[_]]
+      ).withReferenceResolver(classOf[IdentityReferenceResolver], classOf[_root_.java.util.List[_]])
+      val conf = new JavaMapConfig
+      ri.set(conf)
+      val copy = new ReflectingInstantiator(conf)
+      copy should equal(ri)
+      val k = copy.newKryo
+      k.getReferences should equal(true)
+      k.getReferenceResolver.getClass should equal(classOf[IdentityReferenceResolver])
+      k.getReferenceResolver.useReferences(classOf[_root_.java.util.ArrayList[_]]) should equal(true)
+      k.getReferenceResolver.useReferences(classOf[String]) should equal(false)
+    }
+    "clear a reference resolver left in the config by an earlier set" in {
+      val plain = new ReflectingInstantiator(
+        _root_.java.util.Collections.emptyList[ClassRegistrar[_]],
+        _root_.java.util.Collections.emptyList[ReflectingRegistrar[_]],
+        _root_.java.util.Collections.emptyList[ReflectingDefaultRegistrar[_]]
+      )
+      val tracking = plain.withReferenceResolver(classOf[IdentityReferenceResolver])
+      tracking.hashCode should not equal plain.hashCode
+      val conf = new JavaMapConfig
+      tracking.set(conf)
+      plain.set(conf)
+      val copy = new ReflectingInstantiator(conf)
+      copy should equal(plain)
+      copy.newKryo.getReferenceResolver.getClass should not equal classOf[IdentityReferenceResolver]
+    }
   }
 }
 
@@ -1,7 +1,9 @@
 package com.twitter.chill.java
 
 import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
 
+import com.esotericsoftware.kryo.KryoException
 import com.twitter.chill.{KryoInstantiator, KryoPool}
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
@@ -21,4 +23,145 @@ class SerDeStateTest extends AnyWordSpec with Matchers {
       st.readClassAndObject() should equal("Hello World")
     }
   }
+
+  "KryoPool.withUnsafeBuffer" should {
+    "round trip primitive arrays" in {
+      val pool = KryoPool.withUnsafeBuffer(1, new KryoInstantiator, 16, -1)
+      val longs = Array.tabulate(1000)(i => i.toLong * Int.MaxValue)
+      val doubles = Array.tabulate(1000)(i => i / 7.0)
+      pool.fromBytes(pool.toBytesWithClass(longs)).asInstanceOf[Array[Long]] should equal(longs)
+      pool.fromBytes(pool.toBytesWithoutClass(doubles), classOf[Array[Double]]) should equal(doubles)
+      pool.fromBytes(pool.toBytesWithClass(java.lang.Long.valueOf(-3L))) should equal(-3L)
+    }
+  }
+
+  def pools: Map[String, KryoPool] =
+    Map(
+      "withBuffer" -> KryoPool.withBuffer(1, new KryoInstantiator, 16, -1),
+      "withByteArrayOutputStream" -> KryoPool.withByteArrayOutputStream(1, new KryoInstantiator),
+      "withByteBuffers" -> KryoPool.withByteBuffers(1, new KryoInstantiator, 16, -1),
+      "withUnsafeBuffer" -> KryoPool.withUnsafeBuffer(1, new KryoInstantiator, 16, -1)
+    )
+  val message = Array.tabulate(100)(i => "item" + i).toList.mkString(",")
+
+  "KryoPool ByteBuffer methods" should {
+
+    pools.foreach { case (name, pool) =>
+      s"round trip through heap and direct buffers ($name)" in {
+        Seq(ByteBuffer.allocate(4096), ByteBuffer.allocateDirect(4096)).foreach { buf =>
+          buf.position(3)
+          val n = pool.toByteBufferWithClass(message, buf)
+          n should equal(pool.toBytesWithClass(message).length)
+          pool.toByteBufferWithoutClass("second", buf)
+          buf.position() should equal(3 + n + pool.toBytesWithoutClass("second").length)
+          buf.flip()
+          buf.position(3)
+          pool.fromByteBuffer(buf) should equal(message)
+          buf.position() should equal(3 + n)
+          pool.fromByteBuffer(buf, classOf[String]) should equal("second")
+          buf.hasRemaining should equal(false)
+        }
+      }
+      s"leave the buffer alone when it is too small ($name)" in {
+        val buf = ByteBuffer.allocateDirect(32)
+        buf.position(1)
+        an[KryoException] should be thrownBy pool.toByteBufferWithClass(message, buf)
+        buf.position() should equal(1)
+        // The pooled state is still usable
+        pool.fromBytes(pool.toBytesWithClass(message)) should equal(message)
+      }
+    }
+  }
+
+  "KryoPool offset methods" should {
+
+    pools.foreach { case (name, pool) =>
+      s"round trip through part of a caller's array ($name)" in {
+        val buf = new Array[Byte](4096)
+        val n = pool.toBytesWithClass(message, buf, 5)
+        n should equal(pool.toBytesWithClass(message).length)
+        val m = pool.toBytesWithoutClass("second", buf, 5 + n)
+        m should equal(pool.toBytesWithoutClass("second").length)
+        pool.fromBytes(buf, 5, n) should equal(message)
+        pool.fromBytes(buf, 5 + n, m, classOf[String]) should equal("second")
+      }
+      s"return -1 when the caller's array is too small ($name)" in {
+        val n = pool.toBytesWithClass(message).length
+        val buf = new Array[Byte](n + 2)
+        pool.toBytesWithClass(message, buf, 3) should equal(-1)
+        buf.forall(_ == 0) should equal(true)
+        pool.toBytesWithClass(message, buf, 2) should equal(n)
+        pool.fromBytes(buf, 2, n) should equal(message)
+      }
+    }
+  }
+
+  "SerDeState.writeLengthPrefixed" should {
+    // Sizes whose varints take 1, 2, 3 and then 1 byte again
+    val records = Seq("a", "b" * 200, "c" * 20000, "d", "e" * 20000)
+
+    pools.foreach { case (name, pool) =>
+      s"write records after their sizes ($name)" in {
+        val st = pool.borrow()
+        records.foreach(st.writeLengthPrefixed(_))
+        val bytes = st.outputToBytes
+        pool.release(st)
+
+        var pos = 0
+        records.foreach { r =>
+          var size = 0
+          var shift = 0
+          while ((bytes(pos) & 0x80) != 0) {
+            size |= (bytes(pos) & 0x7f) << shift
+            shift += 7
+            pos += 1
+          }
+          size |= bytes(pos) << shift
+          pos += 1
+          size should equal(pool.toBytesWithoutClass(r).length)
+          pool.fromBytes(bytes, pos, size, classOf[String]) should equal(r)
+          pos += size
+        }
+        pos should equal(bytes.length)
+      }
+    }
+    "leave the output as it was when a record fails" in {
+      val pool = KryoPool.withBuffer(1, new KryoInstantiator, 16, 64)
+      val st = pool.borrow()
+      st.writeLengthPrefixed("ok")
+      val before = st.outputToBytes
+      an[KryoException] should be thrownBy st.writeLengthPrefixed("x" * 100)
+      st.outputToBytes should equal(before)
+      pool.release(st)
+    }
+  }
+
+  "KryoPool batch methods" should {
+    val objs: Array[AnyRef] = Array(message, Integer.valueOf(7), "x", new java.util.ArrayList[String], message)
+
+    pools.foreach { case (name, pool) =>
+      s"round trip a batch ($name)" in {
+        val batch = pool.toBatchWithClass(objs)
+        batch.size should equal(objs.length)
+        pool.fromBatch(batch).toArray should equal(objs)
+        (0 until batch.size).foreach { i =>
+          val one = _root_.java.util.Arrays.copyOfRange(batch.getBytes, batch.getStart(i), batch.getEnd(i))
+          pool.fromBytes(one) should equal(objs(i))
+        }
+        pool.toBatchWithClass(new Array[AnyRef](0)).size should equal(0)
+      }
+      s"write a batch into a caller's buffer ($name)" in {
+        val length = pool.toBatchWithClass(objs).getLength
+        val buf = new Array[Byte](length + 10)
+        val ends = new Array[Int](objs.length)
+        pool.toBatchWithClass(objs, buf, 10, ends) should equal(length)
+        ends.last should equal(length + 10)
+        pool.fromBatch(buf, 10, length).toArray should equal(objs)
+        pool.fromBytes(_root_.java.util.Arrays.copyOfRange(buf, ends(0), ends(1))) should equal(7)
+
+        pool.toBatchWithClass(objs, buf, 11, ends) should equal(-1)
+        pool.toBatchWithClass(objs, buf, 0, new Array[Int](2)) should equal(-1)
+      }
+    }
+  }
 }
@@ -93,12 +93,8 @@ public class ProtobufSerializer extends Serializer<Message> {
 
   @Override
   public Message copy(Kryo kryo, Message original) {
-    try {
-      byte[] bytes = original.toByteArray();
-      return (Message)getParse(original.getClass()).invoke(null, bytes);
-    } catch (Exception exception) {
-      throw new RuntimeException("Copy message error.", exception);
-    }
+    // Messages are immutable, so there is nothing to gain from a re-parse
+    return original;
   }
 
 }
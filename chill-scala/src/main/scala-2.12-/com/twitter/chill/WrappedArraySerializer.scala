@@ -20,7 +20,7 @@ import scala.collection.mutable
 import scala.collection.mutable.{ArrayBuilder, WrappedArray}
 import scala.reflect._
 
-class WrappedArraySerializer[T] extends KSerializer[WrappedArray[T]] {
+class WrappedArraySerializer[T] extends KSerializer[WrappedArray[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, obj: WrappedArray[T]): Unit = {
     // Write the class-manifest, we don't use writeClass because it
     // uses the registration system, and this class might not be registered
@@ -20,7 +20,7 @@ import scala.collection.Factory
 
 class TraversableSerializer[T, C <: Iterable[T]](override val isImmutable: Boolean = true)(implicit
     cbf: Factory[T, C]
-) extends KSerializer[C] {
+) extends KSerializer[C] with ShareableSerializer {
   def write(kser: Kryo, out: Output, obj: C): Unit = {
     // Write the size:
     out.writeInt(obj.size, true)
@@ -46,4 +46,24 @@ class TraversableSerializer[T, C <: Iterable[T]](override val isImmutable: Boole
     }
     builder.result()
   }
+
+  override def copy(kser: Kryo, obj: C): C = {
+    val copies = new Array[AnyRef](obj.size)
+    // An immutable collection whose items all copy to themselves can be shared
+    var changed = !isImmutable
+    var idx = 0
+    obj.foreach { t =>
+      val tRef = t.asInstanceOf[AnyRef]
+      val tCopy = kser.copy(tRef)
+      changed = changed || !(tCopy eq tRef)
+      copies(idx) = tCopy
+      idx += 1
+    }
+    if (changed) {
+      val builder = cbf.newBuilder
+      builder.sizeHint(copies.length)
+      copies.foreach(c => builder += c.asInstanceOf[T])
+      builder.result()
+    } else obj
+  }
 }
@@ -19,7 +19,7 @@ package com.twitter.chill
 import scala.collection.mutable.{ArrayBuilder, ArraySeq}
 import scala.reflect._
 
-class WrappedArraySerializer[T] extends KSerializer[ArraySeq[T]] {
+class WrappedArraySerializer[T] extends KSerializer[ArraySeq[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, obj: ArraySeq[T]): Unit = {
     // Write the class-manifest, we don't use writeClass because it
     // uses the registration system, and this class might not be registered
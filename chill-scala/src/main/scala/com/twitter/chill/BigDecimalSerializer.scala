@@ -19,7 +19,7 @@ package com.twitter.chill
 import _root_.java.math.{BigDecimal => JBigDecimal}
 import _root_.scala.math.BigDecimal
 
-private class BigDecimalSerializer extends KSerializer[BigDecimal] {
+private class BigDecimalSerializer extends KSerializer[BigDecimal] with ShareableSerializer {
   override def read(kryo: Kryo, input: Input, cls: Class[BigDecimal]): BigDecimal = {
     val jBigDec = kryo.readClassAndObject(input).asInstanceOf[JBigDecimal]
     BigDecimal(jBigDec)
@@ -18,7 +18,7 @@ package com.twitter.chill
 
 import scala.collection.immutable.BitSet
 
-class BitSetSerializer extends KSerializer[BitSet] {
+class BitSetSerializer extends KSerializer[BitSet] with ShareableSerializer {
   def write(k: Kryo, o: Output, v: BitSet): Unit = {
     val size = v.size
     o.writeInt(size, true)
@@ -18,7 +18,7 @@ package com.twitter.chill
 
 import scala.reflect.ClassTag
 
-class ClassTagSerializer[T] extends KSerializer[ClassTag[T]] {
+class ClassTagSerializer[T] extends KSerializer[ClassTag[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, obj: ClassTag[T]): Unit =
     kser.writeObject(out, obj.runtimeClass)
 
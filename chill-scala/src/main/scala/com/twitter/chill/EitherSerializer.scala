@@ -16,18 +16,30 @@ limitations under the License.
 
 package com.twitter.chill
 
-class LeftSerializer[A, B] extends KSerializer[Left[A, B]] {
+class LeftSerializer[A, B] extends KSerializer[Left[A, B]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, left: Left[A, B]): Unit =
     kser.writeClassAndObject(out, left.left.get)
 
   def read(kser: Kryo, in: Input, cls: Class[Left[A, B]]): Left[A, B] =
     Left(kser.readClassAndObject(in).asInstanceOf[A])
+
+  override def copy(kser: Kryo, left: Left[A, B]): Left[A, B] = {
+    val v = left.left.get.asInstanceOf[AnyRef]
+    val vCopy = kser.copy(v)
+    if (vCopy eq v) left else Left(vCopy.asInstanceOf[A])
+  }
 }
 
-class RightSerializer[A, B] extends KSerializer[Right[A, B]] {
+class RightSerializer[A, B] extends KSerializer[Right[A, B]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, right: Right[A, B]): Unit =
     kser.writeClassAndObject(out, right.right.get)
 
   def read(kser: Kryo, in: Input, cls: Class[Right[A, B]]): Right[A, B] =
     Right(kser.readClassAndObject(in).asInstanceOf[B])
+
+  override def copy(kser: Kryo, right: Right[A, B]): Right[A, B] = {
+    val v = right.right.get.asInstanceOf[AnyRef]
+    val vCopy = kser.copy(v)
+    if (vCopy eq v) right else Right(vCopy.asInstanceOf[B])
+  }
 }
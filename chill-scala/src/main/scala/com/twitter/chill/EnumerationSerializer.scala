@@ -18,11 +18,13 @@ package com.twitter.chill
 
 import scala.collection.mutable.{Map => MMap}
 
-class EnumerationSerializer extends KSerializer[Enumeration#Value] {
+class EnumerationSerializer extends KSerializer[Enumeration#Value] with ShareableSerializer {
   private val enumMethod = "scala$Enumeration$$outerEnum"
   private val outerMethod = classOf[Enumeration#Value].getMethod(enumMethod)
   // Cache the enum lookup:
   private val enumMap = MMap[Enumeration#Value, Enumeration]()
+  // Values are singletons, so Kryo.copy hands them back
+  setImmutable(true)
 
   private def enumOf(v: Enumeration#Value): Enumeration =
     enumMap.synchronized {
@@ -79,7 +79,7 @@ class Externalizer[T] extends Externalizable with KryoSerializable {
    * classpath, we have to serialize the KryoInstantiator at the same time, which would increase size.
    */
   protected def kryo: KryoInstantiator =
-    (new ScalaKryoInstantiator).setReferences(true)
+    (new ScalaKryoInstantiator).withIdentityReferences()
 
   // 1 here is 1 thread, since we will likely only serialize once
   // this should not be a val because we don't want to capture a reference
@@ -11,7 +11,7 @@ import scala.collection.JavaConverters.asJavaIterableConverter
  *
  * Ported from Apache Spark's KryoSerializer.scala.
  */
-private class JavaIterableWrapperSerializer extends KSerializer[JIterable[_]] {
+private class JavaIterableWrapperSerializer extends KSerializer[JIterable[_]] with ShareableSerializer {
   import JavaIterableWrapperSerializer._
 
   override def write(kryo: Kryo, out: Output, obj: JIterable[_]): Unit =
@@ -16,7 +16,7 @@ limitations under the License.
 
 package com.twitter.chill
 
-class ManifestSerializer[T] extends KSerializer[Manifest[T]] {
+class ManifestSerializer[T] extends KSerializer[Manifest[T]] with ShareableSerializer {
   val singletons: IndexedSeq[Manifest[_]] = IndexedSeq(
     Manifest.Any,
     Manifest.AnyVal,
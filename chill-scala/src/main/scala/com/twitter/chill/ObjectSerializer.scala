@@ -23,8 +23,10 @@ import _root_.java.lang.reflect.Field
 /**
  * Uses facts about how scala compiles object singletons to Java + reflection
  */
-class ObjectSerializer[T] extends KSerializer[T] {
+class ObjectSerializer[T] extends KSerializer[T] with ShareableSerializer {
   val cachedObj: MMap[Class[_], Option[T]] = MMap[Class[_], Option[T]]()
+  // Kryo.copy hands back the object itself
+  setImmutable(true)
 
   // Does nothing
   override def write(kser: Kryo, out: Output, obj: T): Unit = {}
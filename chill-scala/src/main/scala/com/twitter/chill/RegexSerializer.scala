@@ -18,7 +18,7 @@ package com.twitter.chill
 
 import scala.util.matching.Regex
 
-class RegexSerializer extends KSerializer[Regex] {
+class RegexSerializer extends KSerializer[Regex] with ShareableSerializer {
   def write(kser: Kryo, out: Output, obj: Regex): Unit =
     out.writeString(obj.pattern.pattern)
 
@@ -45,6 +45,7 @@ import scala.collection.mutable.{
 import scala.util.matching.Regex
 
 import com.twitter.chill.java.{Java8ClosureRegistrar, PackageRegistrar}
+import com.esotericsoftware.kryo.util.MapReferenceResolver
 import _root_.java.io.Serializable
 
 import scala.collection.JavaConverters._
@@ -57,7 +58,7 @@ import scala.reflect.ClassTag
  */
 class EmptyScalaKryoInstantiator extends KryoInstantiator {
   override def newKryo: KryoBase = {
-    val k = new KryoBase
+    val k = newKryoBase
     k.setRegistrationRequired(false)
     k.setInstantiatorStrategy(new org.objenesis.strategy.StdInstantiatorStrategy)
 
@@ -69,6 +70,14 @@ class EmptyScalaKryoInstantiator extends KryoInstantiator {
 
     k
   }
+
+  protected def newKryoBase: KryoBase = new KryoBase
+}
+
+/** Kryo instances from this resolve classes with a [[SharedClassResolver]] */
+private[chill] class SharedResolverScalaKryoInstantiator extends EmptyScalaKryoInstantiator {
+  override protected def newKryoBase: KryoBase =
+    new KryoBase(new SharedClassResolver, new MapReferenceResolver)
 }
 
 object ScalaKryoInstantiator extends Serializable {
@@ -80,16 +89,10 @@ object ScalaKryoInstantiator extends Serializable {
    */
   def defaultPool: KryoPool = mutex.synchronized {
     if (null == kpool) {
-      kpool = KryoPool.withByteArrayOutputStream(guessThreads, new ScalaKryoInstantiator)
+      kpool = KryoPool.withByteArrayOutputStream(KryoPool.defaultPoolSize, new ScalaKryoInstantiator)
     }
     kpool
   }
-
-  private def guessThreads: Int = {
-    val cores = Runtime.getRuntime.availableProcessors
-    val GUESS_THREADS_PER_CORE = 4
-    GUESS_THREADS_PER_CORE * cores
-  }
 }
 
 /** Makes an empty instantiator then registers everything */
@@ -102,6 +105,15 @@ class ScalaKryoInstantiator extends EmptyScalaKryoInstantiator {
   }
 }
 
+/**
+ * Registers the same as ScalaKryoInstantiator, but runs AllScalaRegistrar only once and copies its
+ * registrations into every later Kryo, see [[TemplateKryoInstantiator]]. Those Kryo instances share one table of
+ * registrations and class names through a [[SharedClassResolver]]. It has a no-arg constructor, so it can
+ * be given to a ConfiguredInstantiator by reflection.
+ */
+class TemplateScalaKryoInstantiator
+    extends TemplateKryoInstantiator(new SharedResolverScalaKryoInstantiator, new AllScalaRegistrar)
+
 /**
  * Note that additional scala collections registrations are provided by [[AllScalaRegistrar]]. They have not
  * been included in this registrar for backwards compatibility reasons.
@@ -193,7 +205,7 @@ final private[chill] class AllScalaRegistrar_0_9_2 extends IKryoRegistrar {
 
     // Register all 22 tuple serializers and specialized serializers
     ScalaTupleSerialization.register(k)
-    k.forClass[Symbol](new KSerializer[Symbol] {
+    k.forClass[Symbol](new KSerializer[Symbol] with ShareableSerializer {
       override def isImmutable = true
       def write(k: Kryo, out: Output, obj: Symbol): Unit = out.writeString(obj.name)
       def read(k: Kryo, in: Input, cls: Class[Symbol]): Symbol = Symbol(in.readString)
@@ -19,7 +19,9 @@ package com.twitter.chill
 // Singletons are easy, you just return the singleton and don't read:
 // It's important you actually do this, or Kryo will generate Nil != Nil, or None != None
 
-class SingletonSerializer[T](obj: T) extends KSerializer[T] {
+class SingletonSerializer[T](obj: T) extends KSerializer[T] with ShareableSerializer {
+  // Kryo.copy hands back the singleton too
+  setImmutable(true)
   def write(kser: Kryo, out: Output, obj: T): Unit = {}
   def read(kser: Kryo, in: Input, cls: Class[T]): T = obj
 }
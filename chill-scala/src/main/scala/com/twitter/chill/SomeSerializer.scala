@@ -16,10 +16,16 @@ limitations under the License.
 
 package com.twitter.chill
 
-class SomeSerializer[T] extends KSerializer[Some[T]] {
+class SomeSerializer[T] extends KSerializer[Some[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, item: Some[T]): Unit =
     kser.writeClassAndObject(out, item.get)
 
   def read(kser: Kryo, in: Input, cls: Class[Some[T]]): Some[T] =
     Some(kser.readClassAndObject(in).asInstanceOf[T])
+
+  override def copy(kser: Kryo, item: Some[T]): Some[T] = {
+    val v = item.get.asInstanceOf[AnyRef]
+    val vCopy = kser.copy(v)
+    if (vCopy eq v) item else Some(vCopy.asInstanceOf[T])
+  }
 }
@@ -18,7 +18,7 @@ package com.twitter.chill
 
 import scala.collection.immutable.SortedMap
 
-class SortedMapSerializer[A, B] extends KSerializer[SortedMap[A, B]] {
+class SortedMapSerializer[A, B] extends KSerializer[SortedMap[A, B]] with ShareableSerializer {
   type M = SortedMap[A, B]
 
   def write(kser: Kryo, out: Output, map: M): Unit = {
@@ -51,4 +51,16 @@ class SortedMapSerializer[A, B] extends KSerializer[SortedMap[A, B]] {
     }
     builder.result()
   }
+
+  override def copy(kser: Kryo, map: M): M = {
+    // The map itself is immutable, so it can be shared unless an entry changes
+    var changed = false
+    val builder = SortedMap.newBuilder[A, B](map.ordering)
+    map.foreach { t =>
+      val tCopy = kser.copy(t)
+      changed = changed || !(tCopy eq t)
+      builder += tCopy
+    }
+    if (changed) builder.result() else map
+  }
 }
@@ -18,7 +18,7 @@ package com.twitter.chill
 
 import scala.collection.immutable.SortedSet
 
-class SortedSetSerializer[T] extends KSerializer[SortedSet[T]] {
+class SortedSetSerializer[T] extends KSerializer[SortedSet[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, set: SortedSet[T]): Unit = {
     // Write the size
     out.writeInt(set.size, true)
@@ -49,4 +49,17 @@ class SortedSetSerializer[T] extends KSerializer[SortedSet[T]] {
     }
     builder.result()
   }
+
+  override def copy(kser: Kryo, set: SortedSet[T]): SortedSet[T] = {
+    // The set itself is immutable, so it can be shared unless an item changes
+    var changed = false
+    val builder = SortedSet.newBuilder[T](set.ordering)
+    set.foreach { t =>
+      val tRef = t.asInstanceOf[AnyRef]
+      val tCopy = kser.copy(tRef)
+      changed = changed || !(tCopy eq tRef)
+      builder += tCopy.asInstanceOf[T]
+    }
+    if (changed) builder.result() else set
+  }
 }
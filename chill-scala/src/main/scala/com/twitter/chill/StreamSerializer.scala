@@ -1,6 +1,6 @@
 package com.twitter.chill
 
-class StreamSerializer[T]() extends KSerializer[Stream[T]] {
+class StreamSerializer[T]() extends KSerializer[Stream[T]] with ShareableSerializer {
   def write(kser: Kryo, out: Output, stream: Stream[T]): Unit =
     kser.writeClassAndObject(out, stream.toList)
 
@@ -17,10 +17,28 @@ package com.twitter.chill
 
 import _root_.java.io.Serializable
 
-// DO NOT EDIT: auto generated by tuple_serializers.scala at: 2019/11/25 13:14:37 -0500
+// DO NOT EDIT: auto generated by tuple_serializers.scala at: 2026/10/18 13:52:44 +0000
 // scala tuple_serializers.scala
 
-class Tuple1Serializer[A] extends KSerializer[Tuple1[A]] with Serializable {
+private[chill] object TupleSerializers {
+  // Copies of the elements, or null if every one copied to itself so the tuple can be shared
+  def copyElements(kser: Kryo, tup: Product): Array[AnyRef] = {
+    val arity = tup.productArity
+    val copies = new Array[AnyRef](arity)
+    var changed = false
+    var idx = 0
+    while (idx < arity) {
+      val elem = tup.productElement(idx).asInstanceOf[AnyRef]
+      val elemCopy = kser.copy(elem)
+      changed = changed || !(elemCopy eq elem)
+      copies(idx) = elemCopy
+      idx += 1
+    }
+    if (changed) copies else null
+  }
+}
+
+class Tuple1Serializer[A] extends KSerializer[Tuple1[A]] with Serializable with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple1[A]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -29,8 +47,16 @@ class Tuple1Serializer[A] extends KSerializer[Tuple1[A]] with Serializable {
     new Tuple1[A](
       kser.readClassAndObject(in).asInstanceOf[A]
     )
+  override def copy(kser: Kryo, obj: Tuple1[A]): Tuple1[A] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple1[A](
+        c(0).asInstanceOf[A]
+      )
+  }
 }
-class Tuple2Serializer[A, B] extends KSerializer[Tuple2[A, B]] with Serializable {
+class Tuple2Serializer[A, B] extends KSerializer[Tuple2[A, B]] with Serializable with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple2[A, B]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -41,8 +67,20 @@ class Tuple2Serializer[A, B] extends KSerializer[Tuple2[A, B]] with Serializable
       kser.readClassAndObject(in).asInstanceOf[A],
       kser.readClassAndObject(in).asInstanceOf[B]
     )
+  override def copy(kser: Kryo, obj: Tuple2[A, B]): Tuple2[A, B] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple2[A, B](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B]
+      )
+  }
 }
-class Tuple3Serializer[A, B, C] extends KSerializer[Tuple3[A, B, C]] with Serializable {
+class Tuple3Serializer[A, B, C]
+    extends KSerializer[Tuple3[A, B, C]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple3[A, B, C]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -55,8 +93,21 @@ class Tuple3Serializer[A, B, C] extends KSerializer[Tuple3[A, B, C]] with Serial
       kser.readClassAndObject(in).asInstanceOf[B],
       kser.readClassAndObject(in).asInstanceOf[C]
     )
+  override def copy(kser: Kryo, obj: Tuple3[A, B, C]): Tuple3[A, B, C] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple3[A, B, C](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C]
+      )
+  }
 }
-class Tuple4Serializer[A, B, C, D] extends KSerializer[Tuple4[A, B, C, D]] with Serializable {
+class Tuple4Serializer[A, B, C, D]
+    extends KSerializer[Tuple4[A, B, C, D]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple4[A, B, C, D]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -71,8 +122,22 @@ class Tuple4Serializer[A, B, C, D] extends KSerializer[Tuple4[A, B, C, D]] with
       kser.readClassAndObject(in).asInstanceOf[C],
       kser.readClassAndObject(in).asInstanceOf[D]
     )
+  override def copy(kser: Kryo, obj: Tuple4[A, B, C, D]): Tuple4[A, B, C, D] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple4[A, B, C, D](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D]
+      )
+  }
 }
-class Tuple5Serializer[A, B, C, D, E] extends KSerializer[Tuple5[A, B, C, D, E]] with Serializable {
+class Tuple5Serializer[A, B, C, D, E]
+    extends KSerializer[Tuple5[A, B, C, D, E]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple5[A, B, C, D, E]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -89,8 +154,23 @@ class Tuple5Serializer[A, B, C, D, E] extends KSerializer[Tuple5[A, B, C, D, E]]
       kser.readClassAndObject(in).asInstanceOf[D],
       kser.readClassAndObject(in).asInstanceOf[E]
     )
+  override def copy(kser: Kryo, obj: Tuple5[A, B, C, D, E]): Tuple5[A, B, C, D, E] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple5[A, B, C, D, E](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E]
+      )
+  }
 }
-class Tuple6Serializer[A, B, C, D, E, F] extends KSerializer[Tuple6[A, B, C, D, E, F]] with Serializable {
+class Tuple6Serializer[A, B, C, D, E, F]
+    extends KSerializer[Tuple6[A, B, C, D, E, F]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple6[A, B, C, D, E, F]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -109,10 +189,24 @@ class Tuple6Serializer[A, B, C, D, E, F] extends KSerializer[Tuple6[A, B, C, D,
       kser.readClassAndObject(in).asInstanceOf[E],
       kser.readClassAndObject(in).asInstanceOf[F]
     )
+  override def copy(kser: Kryo, obj: Tuple6[A, B, C, D, E, F]): Tuple6[A, B, C, D, E, F] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple6[A, B, C, D, E, F](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F]
+      )
+  }
 }
 class Tuple7Serializer[A, B, C, D, E, F, G]
     extends KSerializer[Tuple7[A, B, C, D, E, F, G]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple7[A, B, C, D, E, F, G]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -133,10 +227,25 @@ class Tuple7Serializer[A, B, C, D, E, F, G]
       kser.readClassAndObject(in).asInstanceOf[F],
       kser.readClassAndObject(in).asInstanceOf[G]
     )
+  override def copy(kser: Kryo, obj: Tuple7[A, B, C, D, E, F, G]): Tuple7[A, B, C, D, E, F, G] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple7[A, B, C, D, E, F, G](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G]
+      )
+  }
 }
 class Tuple8Serializer[A, B, C, D, E, F, G, H]
     extends KSerializer[Tuple8[A, B, C, D, E, F, G, H]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple8[A, B, C, D, E, F, G, H]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -163,10 +272,26 @@ class Tuple8Serializer[A, B, C, D, E, F, G, H]
       kser.readClassAndObject(in).asInstanceOf[G],
       kser.readClassAndObject(in).asInstanceOf[H]
     )
+  override def copy(kser: Kryo, obj: Tuple8[A, B, C, D, E, F, G, H]): Tuple8[A, B, C, D, E, F, G, H] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple8[A, B, C, D, E, F, G, H](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H]
+      )
+  }
 }
 class Tuple9Serializer[A, B, C, D, E, F, G, H, I]
     extends KSerializer[Tuple9[A, B, C, D, E, F, G, H, I]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple9[A, B, C, D, E, F, G, H, I]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -195,10 +320,27 @@ class Tuple9Serializer[A, B, C, D, E, F, G, H, I]
       kser.readClassAndObject(in).asInstanceOf[H],
       kser.readClassAndObject(in).asInstanceOf[I]
     )
+  override def copy(kser: Kryo, obj: Tuple9[A, B, C, D, E, F, G, H, I]): Tuple9[A, B, C, D, E, F, G, H, I] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple9[A, B, C, D, E, F, G, H, I](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I]
+      )
+  }
 }
 class Tuple10Serializer[A, B, C, D, E, F, G, H, I, J]
     extends KSerializer[Tuple10[A, B, C, D, E, F, G, H, I, J]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple10[A, B, C, D, E, F, G, H, I, J]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -229,10 +371,31 @@ class Tuple10Serializer[A, B, C, D, E, F, G, H, I, J]
       kser.readClassAndObject(in).asInstanceOf[I],
       kser.readClassAndObject(in).asInstanceOf[J]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple10[A, B, C, D, E, F, G, H, I, J]
+  ): Tuple10[A, B, C, D, E, F, G, H, I, J] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple10[A, B, C, D, E, F, G, H, I, J](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J]
+      )
+  }
 }
 class Tuple11Serializer[A, B, C, D, E, F, G, H, I, J, K]
     extends KSerializer[Tuple11[A, B, C, D, E, F, G, H, I, J, K]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple11[A, B, C, D, E, F, G, H, I, J, K]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -265,10 +428,32 @@ class Tuple11Serializer[A, B, C, D, E, F, G, H, I, J, K]
       kser.readClassAndObject(in).asInstanceOf[J],
       kser.readClassAndObject(in).asInstanceOf[K]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple11[A, B, C, D, E, F, G, H, I, J, K]
+  ): Tuple11[A, B, C, D, E, F, G, H, I, J, K] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple11[A, B, C, D, E, F, G, H, I, J, K](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K]
+      )
+  }
 }
 class Tuple12Serializer[A, B, C, D, E, F, G, H, I, J, K, L]
     extends KSerializer[Tuple12[A, B, C, D, E, F, G, H, I, J, K, L]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple12[A, B, C, D, E, F, G, H, I, J, K, L]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -303,10 +488,33 @@ class Tuple12Serializer[A, B, C, D, E, F, G, H, I, J, K, L]
       kser.readClassAndObject(in).asInstanceOf[K],
       kser.readClassAndObject(in).asInstanceOf[L]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple12[A, B, C, D, E, F, G, H, I, J, K, L]
+  ): Tuple12[A, B, C, D, E, F, G, H, I, J, K, L] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple12[A, B, C, D, E, F, G, H, I, J, K, L](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L]
+      )
+  }
 }
 class Tuple13Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M]
     extends KSerializer[Tuple13[A, B, C, D, E, F, G, H, I, J, K, L, M]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple13[A, B, C, D, E, F, G, H, I, J, K, L, M]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -343,10 +551,34 @@ class Tuple13Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M]
       kser.readClassAndObject(in).asInstanceOf[L],
       kser.readClassAndObject(in).asInstanceOf[M]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple13[A, B, C, D, E, F, G, H, I, J, K, L, M]
+  ): Tuple13[A, B, C, D, E, F, G, H, I, J, K, L, M] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple13[A, B, C, D, E, F, G, H, I, J, K, L, M](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M]
+      )
+  }
 }
 class Tuple14Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N]
     extends KSerializer[Tuple14[A, B, C, D, E, F, G, H, I, J, K, L, M, N]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple14[A, B, C, D, E, F, G, H, I, J, K, L, M, N]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -385,10 +617,35 @@ class Tuple14Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N]
       kser.readClassAndObject(in).asInstanceOf[M],
       kser.readClassAndObject(in).asInstanceOf[N]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple14[A, B, C, D, E, F, G, H, I, J, K, L, M, N]
+  ): Tuple14[A, B, C, D, E, F, G, H, I, J, K, L, M, N] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple14[A, B, C, D, E, F, G, H, I, J, K, L, M, N](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N]
+      )
+  }
 }
 class Tuple15Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O]
     extends KSerializer[Tuple15[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple15[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -429,10 +686,36 @@ class Tuple15Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O]
       kser.readClassAndObject(in).asInstanceOf[N],
       kser.readClassAndObject(in).asInstanceOf[O]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple15[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O]
+  ): Tuple15[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple15[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O]
+      )
+  }
 }
 class Tuple16Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P]
     extends KSerializer[Tuple16[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(kser: Kryo, out: Output, obj: Tuple16[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P]): Unit = {
     kser.writeClassAndObject(out, obj._1); out.flush;
@@ -475,10 +758,37 @@ class Tuple16Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P]
       kser.readClassAndObject(in).asInstanceOf[O],
       kser.readClassAndObject(in).asInstanceOf[P]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple16[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P]
+  ): Tuple16[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple16[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P]
+      )
+  }
 }
 class Tuple17Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q]
     extends KSerializer[Tuple17[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -527,10 +837,38 @@ class Tuple17Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q]
       kser.readClassAndObject(in).asInstanceOf[P],
       kser.readClassAndObject(in).asInstanceOf[Q]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple17[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q]
+  ): Tuple17[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple17[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q]
+      )
+  }
 }
 class Tuple18Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R]
     extends KSerializer[Tuple18[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -581,10 +919,39 @@ class Tuple18Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R]
       kser.readClassAndObject(in).asInstanceOf[Q],
       kser.readClassAndObject(in).asInstanceOf[R]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple18[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R]
+  ): Tuple18[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple18[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q],
+        c(17).asInstanceOf[R]
+      )
+  }
 }
 class Tuple19Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S]
     extends KSerializer[Tuple19[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -637,10 +1004,40 @@ class Tuple19Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S]
       kser.readClassAndObject(in).asInstanceOf[R],
       kser.readClassAndObject(in).asInstanceOf[S]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple19[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S]
+  ): Tuple19[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple19[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q],
+        c(17).asInstanceOf[R],
+        c(18).asInstanceOf[S]
+      )
+  }
 }
 class Tuple20Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T]
     extends KSerializer[Tuple20[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -695,10 +1092,41 @@ class Tuple20Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S,
       kser.readClassAndObject(in).asInstanceOf[S],
       kser.readClassAndObject(in).asInstanceOf[T]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple20[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T]
+  ): Tuple20[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple20[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q],
+        c(17).asInstanceOf[R],
+        c(18).asInstanceOf[S],
+        c(19).asInstanceOf[T]
+      )
+  }
 }
 class Tuple21Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U]
     extends KSerializer[Tuple21[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -755,10 +1183,42 @@ class Tuple21Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S,
       kser.readClassAndObject(in).asInstanceOf[T],
       kser.readClassAndObject(in).asInstanceOf[U]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple21[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U]
+  ): Tuple21[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple21[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q],
+        c(17).asInstanceOf[R],
+        c(18).asInstanceOf[S],
+        c(19).asInstanceOf[T],
+        c(20).asInstanceOf[U]
+      )
+  }
 }
 class Tuple22Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V]
     extends KSerializer[Tuple22[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V]]
-    with Serializable {
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def write(
       kser: Kryo,
@@ -817,9 +1277,41 @@ class Tuple22Serializer[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S,
       kser.readClassAndObject(in).asInstanceOf[U],
       kser.readClassAndObject(in).asInstanceOf[V]
     )
+  override def copy(
+      kser: Kryo,
+      obj: Tuple22[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V]
+  ): Tuple22[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V] = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new Tuple22[A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V](
+        c(0).asInstanceOf[A],
+        c(1).asInstanceOf[B],
+        c(2).asInstanceOf[C],
+        c(3).asInstanceOf[D],
+        c(4).asInstanceOf[E],
+        c(5).asInstanceOf[F],
+        c(6).asInstanceOf[G],
+        c(7).asInstanceOf[H],
+        c(8).asInstanceOf[I],
+        c(9).asInstanceOf[J],
+        c(10).asInstanceOf[K],
+        c(11).asInstanceOf[L],
+        c(12).asInstanceOf[M],
+        c(13).asInstanceOf[N],
+        c(14).asInstanceOf[O],
+        c(15).asInstanceOf[P],
+        c(16).asInstanceOf[Q],
+        c(17).asInstanceOf[R],
+        c(18).asInstanceOf[S],
+        c(19).asInstanceOf[T],
+        c(20).asInstanceOf[U],
+        c(21).asInstanceOf[V]
+      )
+  }
 }
 
-class Tuple1LongSerializer extends KSerializer[Tuple1[Long]] with Serializable {
+class Tuple1LongSerializer extends KSerializer[Tuple1[Long]] with Serializable with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple1[Long]]): Tuple1[Long] =
     new Tuple1[Long](in.readLong)
@@ -827,7 +1319,7 @@ class Tuple1LongSerializer extends KSerializer[Tuple1[Long]] with Serializable {
     out.writeLong(tup._1)
 }
 
-class Tuple1IntSerializer extends KSerializer[Tuple1[Int]] with Serializable {
+class Tuple1IntSerializer extends KSerializer[Tuple1[Int]] with Serializable with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple1[Int]]): Tuple1[Int] =
     new Tuple1[Int](in.readInt)
@@ -835,7 +1327,7 @@ class Tuple1IntSerializer extends KSerializer[Tuple1[Int]] with Serializable {
     out.writeInt(tup._1)
 }
 
-class Tuple1DoubleSerializer extends KSerializer[Tuple1[Double]] with Serializable {
+class Tuple1DoubleSerializer extends KSerializer[Tuple1[Double]] with Serializable with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple1[Double]]): Tuple1[Double] =
     new Tuple1[Double](in.readDouble)
@@ -843,7 +1335,10 @@ class Tuple1DoubleSerializer extends KSerializer[Tuple1[Double]] with Serializab
     out.writeDouble(tup._1)
 }
 
-class Tuple2LongLongSerializer extends KSerializer[Tuple2[Long, Long]] with Serializable {
+class Tuple2LongLongSerializer
+    extends KSerializer[Tuple2[Long, Long]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Long, Long]]): Tuple2[Long, Long] =
     new Tuple2[Long, Long](in.readLong, in.readLong)
@@ -853,7 +1348,10 @@ class Tuple2LongLongSerializer extends KSerializer[Tuple2[Long, Long]] with Seri
   }
 }
 
-class Tuple2LongIntSerializer extends KSerializer[Tuple2[Long, Int]] with Serializable {
+class Tuple2LongIntSerializer
+    extends KSerializer[Tuple2[Long, Int]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Long, Int]]): Tuple2[Long, Int] =
     new Tuple2[Long, Int](in.readLong, in.readInt)
@@ -863,7 +1361,10 @@ class Tuple2LongIntSerializer extends KSerializer[Tuple2[Long, Int]] with Serial
   }
 }
 
-class Tuple2LongDoubleSerializer extends KSerializer[Tuple2[Long, Double]] with Serializable {
+class Tuple2LongDoubleSerializer
+    extends KSerializer[Tuple2[Long, Double]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Long, Double]]): Tuple2[Long, Double] =
     new Tuple2[Long, Double](in.readLong, in.readDouble)
@@ -873,7 +1374,10 @@ class Tuple2LongDoubleSerializer extends KSerializer[Tuple2[Long, Double]] with
   }
 }
 
-class Tuple2IntLongSerializer extends KSerializer[Tuple2[Int, Long]] with Serializable {
+class Tuple2IntLongSerializer
+    extends KSerializer[Tuple2[Int, Long]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Int, Long]]): Tuple2[Int, Long] =
     new Tuple2[Int, Long](in.readInt, in.readLong)
@@ -883,7 +1387,10 @@ class Tuple2IntLongSerializer extends KSerializer[Tuple2[Int, Long]] with Serial
   }
 }
 
-class Tuple2IntIntSerializer extends KSerializer[Tuple2[Int, Int]] with Serializable {
+class Tuple2IntIntSerializer
+    extends KSerializer[Tuple2[Int, Int]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Int, Int]]): Tuple2[Int, Int] =
     new Tuple2[Int, Int](in.readInt, in.readInt)
@@ -893,7 +1400,10 @@ class Tuple2IntIntSerializer extends KSerializer[Tuple2[Int, Int]] with Serializ
   }
 }
 
-class Tuple2IntDoubleSerializer extends KSerializer[Tuple2[Int, Double]] with Serializable {
+class Tuple2IntDoubleSerializer
+    extends KSerializer[Tuple2[Int, Double]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Int, Double]]): Tuple2[Int, Double] =
     new Tuple2[Int, Double](in.readInt, in.readDouble)
@@ -903,7 +1413,10 @@ class Tuple2IntDoubleSerializer extends KSerializer[Tuple2[Int, Double]] with Se
   }
 }
 
-class Tuple2DoubleLongSerializer extends KSerializer[Tuple2[Double, Long]] with Serializable {
+class Tuple2DoubleLongSerializer
+    extends KSerializer[Tuple2[Double, Long]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Double, Long]]): Tuple2[Double, Long] =
     new Tuple2[Double, Long](in.readDouble, in.readLong)
@@ -913,7 +1426,10 @@ class Tuple2DoubleLongSerializer extends KSerializer[Tuple2[Double, Long]] with
   }
 }
 
-class Tuple2DoubleIntSerializer extends KSerializer[Tuple2[Double, Int]] with Serializable {
+class Tuple2DoubleIntSerializer
+    extends KSerializer[Tuple2[Double, Int]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Double, Int]]): Tuple2[Double, Int] =
     new Tuple2[Double, Int](in.readDouble, in.readInt)
@@ -923,7 +1439,10 @@ class Tuple2DoubleIntSerializer extends KSerializer[Tuple2[Double, Int]] with Se
   }
 }
 
-class Tuple2DoubleDoubleSerializer extends KSerializer[Tuple2[Double, Double]] with Serializable {
+class Tuple2DoubleDoubleSerializer
+    extends KSerializer[Tuple2[Double, Double]]
+    with Serializable
+    with ShareableSerializer {
   setImmutable(true)
   def read(kser: Kryo, in: Input, cls: Class[Tuple2[Double, Double]]): Tuple2[Double, Double] =
     new Tuple2[Double, Double](in.readDouble, in.readDouble)
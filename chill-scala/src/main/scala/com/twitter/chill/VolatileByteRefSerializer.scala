@@ -2,7 +2,7 @@ package com.twitter.chill
 
 import scala.runtime.VolatileByteRef
 
-class VolatileByteRefSerializer extends KSerializer[VolatileByteRef] {
+class VolatileByteRefSerializer extends KSerializer[VolatileByteRef] with ShareableSerializer {
   def write(kser: Kryo, out: Output, item: VolatileByteRef): Unit =
     out.writeByte(item.elem)
 
@@ -16,6 +16,7 @@ limitations under the License.
 
 package com.twitter.chill
 
+import com.esotericsoftware.kryo.KryoException
 import org.scalatest.matchers.{MatchResult, Matcher}
 
 import scala.collection.immutable.{BitSet, HashMap, HashSet, ListMap, ListSet, SortedMap, SortedSet}
@@ -52,6 +53,13 @@ trait ExampleUsingSelf { self =>
 
 case class Foo(m1: Map[String, Int], m2: Map[String, Seq[String]])
 
+class NoCopy(val x: Int)
+
+class NoCopySerializer extends KSerializer[NoCopy] {
+  def write(k: Kryo, out: Output, obj: NoCopy): Unit = out.writeInt(obj.x)
+  def read(k: Kryo, in: Input, cls: Class[NoCopy]): NoCopy = new NoCopy(in.readInt)
+}
+
 class KryoSpec extends AnyWordSpec with Matchers with BaseProperties {
   def roundtrip[T]: Matcher[T] = new Matcher[T] {
     def apply(t: T): MatchResult =
@@ -344,4 +352,82 @@ class KryoSpec extends AnyWordSpec with Matchers with BaseProperties {
       assert(br0.elem == br1.elem)
     }
   }
+
+  "KryoPool.deepCopy" should {
+    val pool = ScalaKryoInstantiator.defaultPool
+    "copy values equal to their round trip" in {
+      val test = List(
+        (1, 2),
+        ("slightly", 1L, "longer", 42, "tuple"),
+        Foo(Map("1" -> 1), Map("1" -> Seq("foo.com"))),
+        Map(1 -> 2, 4 -> 5),
+        (0 to 42).toList,
+        Some("x"),
+        Left(1),
+        Right(List(1)),
+        None,
+        Nil,
+        WeekDay.Tue,
+        SortedMap(1 -> "a", 2 -> "b"),
+        SortedSet(3, 1, 2),
+        MArrayBuffer(1, 2, 3),
+        TestCaseClassForSerialization("hey", 42),
+        BigDecimal(1.5),
+        new PriorityQueue[Int](List(3, 1, 2).asJava),
+        _root_.java.util.Collections.unmodifiableList(_root_.java.util.Arrays.asList(1, 2)),
+        new _root_.java.util.BitSet(10)
+      )
+      test.foreach { t =>
+        val c = pool.deepCopy(t)
+        c.getClass should equal(t.getClass)
+        c.toString should equal(t.toString)
+      }
+    }
+    "share immutable values" in {
+      val test = List(List(1, 2, 3), ("a", 1), Some("x"), SortedMap(1 -> "a"), Vector((1, "b")), None)
+      test.foreach(t => pool.deepCopy(t) should be theSameInstanceAs t)
+    }
+    "copy mutable values inside immutable ones" in {
+      val arr = Array(1, 2, 3)
+      val tup = (arr, "a")
+      val tupCopy = pool.deepCopy(tup)
+      tupCopy should not be theSameInstanceAs(tup)
+      tupCopy._1 should not be theSameInstanceAs(arr)
+      tupCopy._1.toList should equal(arr.toList)
+      tupCopy._2 should be theSameInstanceAs (tup._2)
+
+      val buf = MArrayBuffer(1)
+      val listCopy = pool.deepCopy(List(buf))
+      listCopy.head should not be theSameInstanceAs(buf)
+      listCopy.head should equal(buf)
+    }
+    "round trip only values some serializer cannot copy" in {
+      def poolWith(ser: KSerializer[NoCopy]): KryoPool =
+        KryoPool.withByteArrayOutputStream(
+          1,
+          new ScalaKryoInstantiator().withRegistrar(new IKryoRegistrar {
+            def apply(k: Kryo): Unit = k.register(classOf[NoCopy], ser)
+          })
+        )
+      val noCopy = poolWith(new NoCopySerializer)
+      (0 until 2).foreach { _ =>
+        val c = noCopy.deepCopy(Some(new NoCopy(3)))
+        c.get.x should equal(3)
+      }
+      val broken = poolWith(new NoCopySerializer {
+        override def copy(k: Kryo, obj: NoCopy): NoCopy = throw new KryoException("broken copy")
+      })
+      intercept[KryoException](broken.deepCopy(Some(new NoCopy(3)))).getMessage should startWith("broken copy")
+    }
+    "copy a builder-made collection once per reference, where the round trip kept one" in {
+      val pool = KryoPool.withByteArrayOutputStream(1, new ScalaKryoInstantiator)
+      val buf = MArrayBuffer(1, 2, 3)
+      val copied = pool.deepCopy((buf, buf))
+      copied._1 should equal(buf)
+      copied._1 should not be theSameInstanceAs(buf)
+      copied._1 should not be theSameInstanceAs(copied._2)
+      val tripped = pool.roundTripCopy((buf, buf))
+      tripped._1 should be theSameInstanceAs tripped._2
+    }
+  }
 }
@@ -0,0 +1,179 @@
+/*
+Copyright 2013 Twitter, Inc.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.twitter.chill
+
+import _root_.java.util.concurrent.{Callable, Executors, TimeUnit}
+
+import com.esotericsoftware.kryo.serializers.{FieldSerializer, MapSerializer}
+import com.esotericsoftware.kryo.util.{DefaultClassResolver, MapReferenceResolver}
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.collection.JavaConverters._
+import scala.collection.immutable.{ListMap, SortedSet}
+import scala.collection.mutable.ArrayBuffer
+
+case class TemplatePoint(x: Int, y: Int)
+
+// Every field is final, but the buffer is state
+class BufferingPointSerializer extends KSerializer[TemplatePoint] {
+  val scratch: ArrayBuffer[Int] = ArrayBuffer[Int]()
+  def write(k: Kryo, out: Output, p: TemplatePoint): Unit = { out.writeInt(p.x); out.writeInt(p.y) }
+  def read(k: Kryo, in: Input, cls: Class[TemplatePoint]): TemplatePoint = TemplatePoint(in.readInt, in.readInt)
+}
+
+class TemplateKryoInstantiatorSpec extends AnyWordSpec with Matchers {
+  def registrations(k: Kryo): Seq[(Class[_], Class[_])] =
+    (0 until k.getNextRegistrationId).map { id =>
+      val r = k.getRegistration(id)
+      (r.getType, r.getSerializer.getClass)
+    }
+
+  val values: List[AnyRef] = List(
+    List(1, 2, 3),
+    Map("a" -> 1, "b" -> 2),
+    ListMap(1 -> "x"),
+    SortedSet(3, 1, 2),
+    (1 to 10),
+    Some(("a", 1L)),
+    Vector(TemplatePoint(1, 2), TemplatePoint(3, 4)),
+    Array[AnyRef]("x", Integer.valueOf(1)),
+    Symbol("sym"),
+    None
+  )
+
+  "A TemplateKryoInstantiator" should {
+    "stamp the same registrations as ScalaKryoInstantiator" in {
+      val templated = new TemplateScalaKryoInstantiator
+      templated.isStamping should equal(true)
+      registrations(templated.newKryo()) should equal(registrations(new ScalaKryoInstantiator().newKryo))
+      templated.newKryo().getReferenceResolver.getClass should equal(classOf[MapReferenceResolver])
+    }
+    "write the same bytes as ScalaKryoInstantiator" in {
+      val plain = KryoPool.withByteArrayOutputStream(1, new ScalaKryoInstantiator)
+      val templated = KryoPool.withByteArrayOutputStream(1, new TemplateScalaKryoInstantiator)
+      values.foreach { v =>
+        val bytes = templated.toBytesWithClass(v)
+        bytes should equal(plain.toBytesWithClass(v))
+        templated.fromBytes(bytes) match {
+          case a: Array[AnyRef] => a.toList should equal(v.asInstanceOf[Array[AnyRef]].toList)
+          case other            => other should equal(v)
+        }
+      }
+    }
+    "share stateless serializers and rebuild stateful ones" in {
+      val inst = new TemplateScalaKryoInstantiator
+      val (a, b) = (inst.newKryo(), inst.newKryo())
+      def ser(k: Kryo, cls: Class[_]) = k.getRegistration(cls).getSerializer
+      ser(a, classOf[Tuple2[_, _]]) should be theSameInstanceAs ser(b, classOf[Tuple2[_, _]])
+      ser(a, classOf[Range]) should not be theSameInstanceAs(ser(b, classOf[Range]))
+      ser(a, classOf[Range]).asInstanceOf[FieldSerializer[_]].getKryo should be theSameInstanceAs a
+    }
+    "fall back to the registrar when a serializer cannot be rebuilt" in {
+      val custom = new IKryoRegistrar {
+        def apply(k: Kryo): Unit = {
+          val fs = new FieldSerializer[TemplatePoint](k, classOf[TemplatePoint])
+          fs.removeField("y")
+          k.register(classOf[TemplatePoint], fs)
+        }
+      }
+      val inst = new EmptyScalaKryoInstantiator().withRegistrationTemplate(custom)
+      inst.asInstanceOf[TemplateKryoInstantiator].isStamping should equal(false)
+      val pool = KryoPool.withByteArrayOutputStream(1, inst)
+      pool.fromBytes(pool.toBytesWithClass(TemplatePoint(1, 2))) should equal(TemplatePoint(1, 0))
+    }
+    "only share serializers marked as shareable" in {
+      TemplateKryoInstantiator.isShareable(new BufferingPointSerializer) should equal(false)
+      TemplateKryoInstantiator.isShareable(new SomeSerializer[Any]) should equal(true)
+      val inst = new EmptyScalaKryoInstantiator().withRegistrationTemplate(new IKryoRegistrar {
+        def apply(k: Kryo): Unit = k.register(classOf[TemplatePoint], new BufferingPointSerializer)
+      })
+      inst.asInstanceOf[TemplateKryoInstantiator].isStamping should equal(false)
+      val (a, b) = (inst.newKryo(), inst.newKryo())
+      a.getSerializer(classOf[TemplatePoint]) should not be theSameInstanceAs(b.getSerializer(classOf[TemplatePoint]))
+    }
+    "fall back to the registrar when a serializer was configured" in {
+      val custom = new IKryoRegistrar {
+        def apply(k: Kryo): Unit = {
+          val ms = new MapSerializer
+          ms.setKeyClass(classOf[String], k.getSerializer(classOf[String]))
+          k.register(classOf[_root_.java.util.HashMap[_, _]], ms)
+        }
+      }
+      val inst = new EmptyScalaKryoInstantiator().withRegistrationTemplate(custom)
+      inst.asInstanceOf[TemplateKryoInstantiator].isStamping should equal(false)
+      val pool = KryoPool.withByteArrayOutputStream(1, inst)
+      val m = new _root_.java.util.HashMap[String, Integer]
+      m.put("a", 1)
+      pool.fromBytes(pool.toBytesWithClass(m)) should equal(m)
+    }
+  }
+
+  "A SharedClassResolver" should {
+    def resolvers(inst: KryoInstantiator) = {
+      val (a, b) = (inst.newKryo(), inst.newKryo())
+      (a, b, a.getClassResolver.asInstanceOf[SharedClassResolver])
+    }
+    "share registrations with shareable serializers between Kryo instances" in {
+      val (a, b, resolver) = resolvers(new TemplateScalaKryoInstantiator)
+      resolver.isShared should equal(true)
+      a.getRegistration(classOf[Tuple2[_, _]]) should be theSameInstanceAs b.getRegistration(classOf[Tuple2[_, _]])
+      a.getRegistration(classOf[Range]) should not be theSameInstanceAs(b.getRegistration(classOf[Range]))
+      a.getRegistration(a.getRegistration(classOf[Tuple2[_, _]]).getId).getType should equal(classOf[Tuple2[_, _]])
+    }
+    "share implicit registrations only when the serializer is stateless" in {
+      val (a, b, _) = resolvers(new TemplateScalaKryoInstantiator)
+      a.getRegistration(classOf[ArrayBuffer[_]]) should be theSameInstanceAs b.getRegistration(classOf[ArrayBuffer[_]])
+      a.getRegistration(classOf[TemplatePoint]) should not be theSameInstanceAs(b.getRegistration(classOf[TemplatePoint]))
+    }
+    "let local registrations win" in {
+      val (a, b, _) = resolvers(new TemplateScalaKryoInstantiator)
+      val id = a.getRegistration(classOf[Tuple2[_, _]]).getId
+      a.register(classOf[TemplatePoint], id)
+      a.getRegistration(id).getType should equal(classOf[TemplatePoint])
+      b.getRegistration(id).getType should equal(classOf[Tuple2[_, _]])
+    }
+    "forget a local registration once it is unregistered" in {
+      val (a, _, resolver) = resolvers(new TemplateScalaKryoInstantiator)
+      val id = a.getNextRegistrationId
+      val local = a.register(classOf[TemplatePoint], id)
+      a.getRegistration(classOf[TemplatePoint]) should be theSameInstanceAs local
+      resolver.unregister(id) should be theSameInstanceAs local
+      // Kryo registers it again, implicitly, by name
+      a.getRegistration(classOf[TemplatePoint]).getId should equal(DefaultClassResolver.NAME)
+      a.getRegistration(id) should be(null)
+    }
+    "round trip unregistered classes between threads" in {
+      val pool = KryoPool.withByteArrayOutputStream(4, new TemplateScalaKryoInstantiator)
+      val exec = Executors.newFixedThreadPool(4)
+      val tasks = (0 until 200).map { i =>
+        new Callable[Boolean] {
+          def call: Boolean = {
+            val v = (TemplatePoint(i, -i), ArrayBuffer(i), values(i % values.size))
+            pool.fromBytes(pool.toBytesWithClass(v)) match {
+              case (p, buf, _: Array[AnyRef]) => p == v._1 && buf == v._2
+              case other                      => other == v
+            }
+          }
+        }
+      }
+      exec.invokeAll(tasks.asJava).asScala.map(_.get).forall(identity) should equal(true)
+      exec.shutdown()
+      exec.awaitTermination(10, TimeUnit.SECONDS)
+    }
+  }
+}
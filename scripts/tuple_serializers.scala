@@ -1,6 +1,7 @@
 /*
- * Run this script with: scala tuple_serializer.scala
- * and it will generate the Kryo serializers for all Scala tuples
+ * Run this script from this directory with: scala tuple_serializers.scala
+ * and it will generate the Kryo serializers for all Scala tuples.
+ * Then run sbt scalafmt so the output matches the checked in formatting.
  */
 
 import java.io.PrintWriter
@@ -73,12 +74,49 @@ def makeRead(size: Int): String = {
 """
 }
 
+def copyAndCast(pos: Int): String =
+  """        c(%d).asInstanceOf[%s]""".format(pos - 1, ('A'.toInt + pos - 1).toChar.toString)
+
+def makeCopy(size: Int): String = {
+  val ttype = tupleType(size)
+  val head = """  override def copy(kser: Kryo, obj: %s) : %s = {
+    val c = TupleSerializers.copyElements(kser, obj)
+    if (c == null) obj
+    else
+      new %s(
+""".format(ttype, ttype, ttype)
+  val copies = (1 to size).map(copyAndCast(_)).mkString(",\n")
+  head + copies + """
+      )
+  }
+"""
+}
+
+val copyHelper = """private[chill] object TupleSerializers {
+  // Copies of the elements, or null if every one copied to itself so the tuple can be shared
+  def copyElements(kser: Kryo, tup: Product): Array[AnyRef] = {
+    val arity = tup.productArity
+    val copies = new Array[AnyRef](arity)
+    var changed = false
+    var idx = 0
+    while (idx < arity) {
+      val elem = tup.productElement(idx).asInstanceOf[AnyRef]
+      val elemCopy = kser.copy(elem)
+      changed = changed || !(elemCopy eq elem)
+      copies(idx) = elemCopy
+      idx += 1
+    }
+    if (changed) copies else null
+  }
+}
+"""
+
 def makeSerializer(size: Int): String = {
   val tList = typeList(size)
   val tType = tupleType(size)
-  ("""class Tuple%dSerializer[%s] extends KSerializer[%s] with Serializable {
+  ("""class Tuple%dSerializer[%s] extends KSerializer[%s] with Serializable with ShareableSerializer {
   setImmutable(true)
-""".format(size, tList, tType)) + makeWrite(size) + makeRead(size) + "}"
+""".format(size, tList, tType)) + makeWrite(size) + makeRead(size) + makeCopy(size) + "}"
 }
 
 def register(size: Int): String = {
@@ -100,7 +138,7 @@ def spTup1(scalaVersion: String)(typeNm: String): String =
   scalaVersion match {
     case "2.10" =>
       """
-      class Tuple1TYPESerializer extends KSerializer[Tuple1$mcSHORT$sp] with Serializable {
+      class Tuple1TYPESerializer extends KSerializer[Tuple1$mcSHORT$sp] with Serializable with ShareableSerializer {
         setImmutable(true)
         def read(kser : Kryo, in : Input, cls : Class[Tuple1$mcSHORT$sp]) : Tuple1$mcSHORT$sp = {
           new Tuple1$mcSHORT$sp(in.readTYPE)
@@ -113,7 +151,7 @@ def spTup1(scalaVersion: String)(typeNm: String): String =
       """.replace("TYPE", typeNm).replace("SHORT", typeMap(typeNm))
     case _ =>
       """
-      class Tuple1TYPESerializer extends KSerializer[Tuple1[TYPE]] with Serializable {
+      class Tuple1TYPESerializer extends KSerializer[Tuple1[TYPE]] with Serializable with ShareableSerializer {
         setImmutable(true)
         def read(kser : Kryo, in : Input, cls : Class[Tuple1[TYPE]]) : Tuple1[TYPE] = {
           new Tuple1[TYPE](in.readTYPE)
@@ -130,7 +168,7 @@ def spTup2(scalaVersion: String)(typeNm1: String, typeNm2: String): String =
   scalaVersion match {
     case "2.10" =>
       """
-      class Tuple2TYPE1TYPE2Serializer extends KSerializer[Tuple2$mcSHORT1SHORT2$sp] with Serializable {
+      class Tuple2TYPE1TYPE2Serializer extends KSerializer[Tuple2$mcSHORT1SHORT2$sp] with Serializable with ShareableSerializer {
         setImmutable(true)
         def read(kser : Kryo, in : Input, cls : Class[Tuple2$mcSHORT1SHORT2$sp]) : Tuple2$mcSHORT1SHORT2$sp = {
           new Tuple2$mcSHORT1SHORT2$sp(in.readTYPE1, in.readTYPE2)
@@ -147,7 +185,7 @@ def spTup2(scalaVersion: String)(typeNm1: String, typeNm2: String): String =
         .replace("SHORT2", typeMap(typeNm2))
     case _ =>
       """
-      class Tuple2TYPE1TYPE2Serializer extends KSerializer[Tuple2[TYPE1, TYPE2]] with Serializable {
+      class Tuple2TYPE1TYPE2Serializer extends KSerializer[Tuple2[TYPE1, TYPE2]] with Serializable with ShareableSerializer {
         setImmutable(true)
         def read(kser : Kryo, in : Input, cls : Class[Tuple2[TYPE1, TYPE2]]) : Tuple2[TYPE1, TYPE2] = {
           new Tuple2[TYPE1, TYPE2](in.readTYPE1, in.readTYPE2)
@@ -203,7 +241,8 @@ def objectHelper(scalaVersion: String): String =
 }
 """
 
-val scalaVersions = ("scala-2.10", "2.10") :: ("scala-2.11+", "2.11") :: Nil
+// Every supported scala version shares the sources in src/main/scala
+val scalaVersions = ("scala", "2.11") :: Nil
 
 scalaVersions.foreach { case (dir, version) =>
   ///////////////////////////////////////////////////////////////////
@@ -212,6 +251,7 @@ scalaVersions.foreach { case (dir, version) =>
   val writer = new PrintWriter(file)
 
   writer.println(header.format(timestamp))
+  writer.println(copyHelper)
   (1 to 22).map(makeSerializer).foreach(writer.println)
   spTypes.map(spTup1(version)).foreach(writer.println)
   spPairs.foreach(t => writer.println(spTup2(version)(t._1, t._2)))